@@ -0,0 +1,268 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.impl.JacksonCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Binding of wide beans (40 fields) with and without the Afterburner module.
+ * Afterburner only optimizes non-private members, so beans with private
+ * fields are included to show they are not affected. Forks open
+ * <code>java.lang</code>, needed on Java 9+ by Afterburner to access
+ * package-private members (requires a Java 9+ runtime).
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class AfterburnerBenchmark {
+
+    @Param({"false", "true"})
+    public boolean afterburner;
+
+    private JacksonCodec codec;
+    private WideBean wideBean;
+    private PrivateWideBean privateWideBean;
+    private String wideJson;
+    private String privateWideJson;
+
+    @Setup
+    public void setup() {
+        codec = new JacksonCodec();
+        if (afterburner) {
+            codec.enableAfterburner();
+        }
+        wideBean = WideBean.create();
+        privateWideBean = PrivateWideBean.create();
+        wideJson = codec.transform(wideBean);
+        privateWideJson = codec.transform(privateWideBean);
+    }
+
+    @Benchmark
+    public String transformWide() {
+        return codec.transform(wideBean);
+    }
+
+    @Benchmark
+    public WideBean parseWide() throws ParseException {
+        return codec.parse(wideJson, WideBean.class);
+    }
+
+    @Benchmark
+    public String transformPrivateWide() {
+        return codec.transform(privateWideBean);
+    }
+
+    @Benchmark
+    public PrivateWideBean parsePrivateWide() throws ParseException {
+        return codec.parse(privateWideJson, PrivateWideBean.class);
+    }
+
+    public static class WideBean {
+
+        String f0;
+        int f1;
+        long f2;
+        double f3;
+        boolean f4;
+        String f5;
+        int f6;
+        long f7;
+        double f8;
+        boolean f9;
+        String f10;
+        int f11;
+        long f12;
+        double f13;
+        boolean f14;
+        String f15;
+        int f16;
+        long f17;
+        double f18;
+        boolean f19;
+        String f20;
+        int f21;
+        long f22;
+        double f23;
+        boolean f24;
+        String f25;
+        int f26;
+        long f27;
+        double f28;
+        boolean f29;
+        String f30;
+        int f31;
+        long f32;
+        double f33;
+        boolean f34;
+        String f35;
+        int f36;
+        long f37;
+        double f38;
+        boolean f39;
+
+        static WideBean create() {
+            WideBean bean = new WideBean();
+            bean.f0 = "value0";
+            bean.f1 = 1;
+            bean.f2 = 2000L;
+            bean.f3 = 1.5;
+            bean.f4 = true;
+            bean.f5 = "value5";
+            bean.f6 = 6;
+            bean.f7 = 7000L;
+            bean.f8 = 4.0;
+            bean.f9 = false;
+            bean.f10 = "value10";
+            bean.f11 = 11;
+            bean.f12 = 12000L;
+            bean.f13 = 6.5;
+            bean.f14 = true;
+            bean.f15 = "value15";
+            bean.f16 = 16;
+            bean.f17 = 17000L;
+            bean.f18 = 9.0;
+            bean.f19 = false;
+            bean.f20 = "value20";
+            bean.f21 = 21;
+            bean.f22 = 22000L;
+            bean.f23 = 11.5;
+            bean.f24 = true;
+            bean.f25 = "value25";
+            bean.f26 = 26;
+            bean.f27 = 27000L;
+            bean.f28 = 14.0;
+            bean.f29 = false;
+            bean.f30 = "value30";
+            bean.f31 = 31;
+            bean.f32 = 32000L;
+            bean.f33 = 16.5;
+            bean.f34 = true;
+            bean.f35 = "value35";
+            bean.f36 = 36;
+            bean.f37 = 37000L;
+            bean.f38 = 19.0;
+            bean.f39 = false;
+            return bean;
+        }
+    }
+
+    public static class PrivateWideBean {
+
+        private String f0;
+        private int f1;
+        private long f2;
+        private double f3;
+        private boolean f4;
+        private String f5;
+        private int f6;
+        private long f7;
+        private double f8;
+        private boolean f9;
+        private String f10;
+        private int f11;
+        private long f12;
+        private double f13;
+        private boolean f14;
+        private String f15;
+        private int f16;
+        private long f17;
+        private double f18;
+        private boolean f19;
+        private String f20;
+        private int f21;
+        private long f22;
+        private double f23;
+        private boolean f24;
+        private String f25;
+        private int f26;
+        private long f27;
+        private double f28;
+        private boolean f29;
+        private String f30;
+        private int f31;
+        private long f32;
+        private double f33;
+        private boolean f34;
+        private String f35;
+        private int f36;
+        private long f37;
+        private double f38;
+        private boolean f39;
+
+        static PrivateWideBean create() {
+            PrivateWideBean bean = new PrivateWideBean();
+            bean.f0 = "value0";
+            bean.f1 = 1;
+            bean.f2 = 2000L;
+            bean.f3 = 1.5;
+            bean.f4 = true;
+            bean.f5 = "value5";
+            bean.f6 = 6;
+            bean.f7 = 7000L;
+            bean.f8 = 4.0;
+            bean.f9 = false;
+            bean.f10 = "value10";
+            bean.f11 = 11;
+            bean.f12 = 12000L;
+            bean.f13 = 6.5;
+            bean.f14 = true;
+            bean.f15 = "value15";
+            bean.f16 = 16;
+            bean.f17 = 17000L;
+            bean.f18 = 9.0;
+            bean.f19 = false;
+            bean.f20 = "value20";
+            bean.f21 = 21;
+            bean.f22 = 22000L;
+            bean.f23 = 11.5;
+            bean.f24 = true;
+            bean.f25 = "value25";
+            bean.f26 = 26;
+            bean.f27 = 27000L;
+            bean.f28 = 14.0;
+            bean.f29 = false;
+            bean.f30 = "value30";
+            bean.f31 = 31;
+            bean.f32 = 32000L;
+            bean.f33 = 16.5;
+            bean.f34 = true;
+            bean.f35 = "value35";
+            bean.f36 = 36;
+            bean.f37 = 37000L;
+            bean.f38 = 19.0;
+            bean.f39 = false;
+            return bean;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.impl.JacksonCodec;
+import org.brutusin.json.impl.benchmark.Payloads.Doc;
+import org.brutusin.json.impl.benchmark.Payloads.Shape;
+import org.brutusin.json.impl.pool.StripedBufferRecyclerPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Thread-per-request serving: every request (a parse and a transform) runs
+ * on a new thread, so thread-local buffer recyclers are never reused. The
+ * GC profiler of JMH only accounts for the benchmark thread, so the bytes
+ * allocated by the request threads are measured by the threads themselves and
+ * printed per request on tear down, with and without a shared pool.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferPoolBenchmark {
+
+    private static final int REQUESTS = 64;
+
+    @Param({"SMALL", "WIDE"})
+    public Shape shape;
+
+    @Param({"false", "true"})
+    public boolean pooled;
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private JacksonCodec codec;
+    private String json;
+
+    @Setup
+    public void setup() {
+        codec = new JacksonCodec();
+        if (pooled) {
+            codec.setBufferRecyclerPool(new StripedBufferRecyclerPool());
+        }
+        json = codec.transform(Payloads.createDoc(shape));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void threadPerRequest() throws InterruptedException {
+        Thread[] threads = new Thread[REQUESTS];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long id = Thread.currentThread().getId();
+                    long start = THREADS.getThreadAllocatedBytes(id);
+                    try {
+                        Doc doc = codec.parse(json, Doc.class);
+                        codec.transform(doc);
+                    } catch (ParseException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    allocated.addAndGet(THREADS.getThreadAllocatedBytes(id) - start);
+                    requests.incrementAndGet();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println();
+        System.out.println(shape + " pooled=" + pooled + " allocated per request: " + allocated.get() / requests.get() + " bytes");
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.impl.JacksonCodec;
+import org.brutusin.json.impl.benchmark.Payloads.Doc;
+import org.brutusin.json.impl.benchmark.Payloads.Shape;
+import org.brutusin.json.spi.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Data codec hot paths: parsing, serialization and tree binding. The
+ * <code>*ViaText</code> benchmarks reproduce the former String round-trip
+ * implementations of <code>load</code> and <code>toJsonNode</code>, as a
+ * baseline.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final OutputStream NULL_OUTPUT_STREAM = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Param({"SMALL", "WIDE", "DEEP", "LARGE"})
+    public Shape shape;
+
+    private JacksonCodec codec;
+    private Doc doc;
+    private String json;
+    private byte[] bytes;
+    private JsonNode node;
+
+    @Setup
+    public void setup() throws ParseException {
+        codec = new JacksonCodec();
+        doc = Payloads.createDoc(shape);
+        json = codec.transform(doc);
+        bytes = json.getBytes(UTF8);
+        node = codec.parse(json);
+    }
+
+    @Benchmark
+    public JsonNode parseTree() throws ParseException {
+        return codec.parse(json);
+    }
+
+    @Benchmark
+    public Doc parseTyped() throws ParseException {
+        return codec.parse(json, Doc.class);
+    }
+
+    @Benchmark
+    public Doc parseTypedFromStream() throws ParseException {
+        return codec.parse(new ByteArrayInputStream(bytes), Doc.class);
+    }
+
+    @Benchmark
+    public String transform() {
+        return codec.transform(doc);
+    }
+
+    @Benchmark
+    public Object transformToStream() {
+        return codec.transform(doc, NULL_OUTPUT_STREAM);
+    }
+
+    @Benchmark
+    public JsonNode toJsonNode() {
+        return codec.toJsonNode(doc);
+    }
+
+    @Benchmark
+    public JsonNode toJsonNodeViaText() throws ParseException {
+        return codec.parse(codec.transform(doc));
+    }
+
+    @Benchmark
+    public Doc load() {
+        return codec.load(node, Doc.class);
+    }
+
+    @Benchmark
+    public Doc loadViaText() throws ParseException {
+        return codec.parse(node.toString(), Doc.class, null).getElement1();
+    }
+}
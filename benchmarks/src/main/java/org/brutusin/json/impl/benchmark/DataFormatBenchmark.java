@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.impl.DataFormat;
+import org.brutusin.json.impl.JacksonCodec;
+import org.brutusin.json.impl.benchmark.Payloads.Doc;
+import org.brutusin.json.impl.benchmark.Payloads.Shape;
+import org.brutusin.json.spi.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization and parsing throughput of the supported wire formats. The
+ * encoded size of each payload is printed on setup.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataFormatBenchmark {
+
+    @Param({"SMALL", "WIDE", "DEEP", "LARGE"})
+    public Shape shape;
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    public DataFormat format;
+
+    private JacksonCodec codec;
+    private Doc doc;
+    private byte[] bytes;
+    private ByteArrayOutputStream baos;
+
+    @Setup
+    public void setup() {
+        codec = new JacksonCodec();
+        codec.setDataFormat(format);
+        doc = Payloads.createDoc(shape);
+        baos = new ByteArrayOutputStream();
+        codec.transform(doc, baos);
+        bytes = baos.toByteArray();
+        System.out.println();
+        System.out.println(shape + " " + format + " encoded size: " + bytes.length + " bytes");
+    }
+
+    @Benchmark
+    public int transform() {
+        baos.reset();
+        codec.transform(doc, baos);
+        return baos.size();
+    }
+
+    @Benchmark
+    public Doc parseTyped() throws ParseException {
+        return codec.parse(bytes, Doc.class);
+    }
+
+    @Benchmark
+    public JsonNode parseTree() throws ParseException {
+        return codec.parse(bytes);
+    }
+}
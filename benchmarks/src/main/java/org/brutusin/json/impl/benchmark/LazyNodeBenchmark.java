@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.benchmark;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.impl.JacksonCodec;
+import org.brutusin.json.impl.benchmark.Payloads.Shape;
+import org.brutusin.json.spi.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sparse access (two values) of a document, through a full tree, through an
+ * index-backed lazy node and through a JSON pointer projection. The heap
+ * retained by the tree and the lazy node is printed on setup.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LazyNodeBenchmark {
+
+    private static final int RETAINED_SAMPLES = 10;
+
+    @Param({"WIDE", "LARGE"})
+    public Shape shape;
+
+    private JacksonCodec codec;
+    private byte[] bytes;
+    private String[] pointers;
+
+    @Setup
+    public void setup() throws ParseException {
+        codec = new JacksonCodec();
+        bytes = codec.transform(Payloads.createDoc(shape)).getBytes(Charset.forName("UTF-8"));
+        int items = codec.parse(bytes).get("items").getSize();
+        pointers = new String[]{"/id", "/items/" + items / 2 + "/name"};
+        JsonNode[] nodes = new JsonNode[RETAINED_SAMPLES];
+        long base = usedHeap();
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = codec.parse(bytes);
+        }
+        long tree = (usedHeap() - base) / nodes.length;
+        nodes = new JsonNode[RETAINED_SAMPLES];
+        base = usedHeap();
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = codec.parseLazy(bytes);
+        }
+        long lazy = (usedHeap() - base) / nodes.length;
+        System.out.println();
+        System.out.println(shape + " document: " + bytes.length + " bytes, retained tree: " + tree + " bytes, retained lazy node (excluding the document): " + lazy + " bytes");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public String tree() throws ParseException {
+        return read(codec.parse(bytes));
+    }
+
+    @Benchmark
+    public String lazy() throws ParseException {
+        return read(codec.parseLazy(bytes));
+    }
+
+    @Benchmark
+    public String projection() throws ParseException {
+        Map<String, JsonNode> values = codec.project(bytes, pointers);
+        JsonNode name = values.get(pointers[1]);
+        return values.get(pointers[0]).asString() + (name == null ? "" : name.asString());
+    }
+
+    private static String read(JsonNode node) {
+        JsonNode items = node.get("items");
+        String ret = node.get("id").asString();
+        if (items != null && items.getSize() > 1) {
+            ret += items.get(items.getSize() / 2).get("name").asString();
+        }
+        return ret;
+    }
+}
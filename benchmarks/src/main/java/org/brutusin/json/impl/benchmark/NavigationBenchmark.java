@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.benchmark;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.brutusin.json.impl.JacksonCodec;
+import org.brutusin.json.impl.JacksonNode;
+import org.brutusin.json.impl.JacksonNodeCursor;
+import org.brutusin.json.impl.benchmark.Payloads.Shape;
+import org.brutusin.json.spi.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full tree walks through {@link JacksonNode} wrappers and through a
+ * {@link JacksonNodeCursor}. Run with <code>-prof gc</code> to compare
+ * allocation rates.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NavigationBenchmark {
+
+    @Param({"WIDE", "DEEP", "LARGE"})
+    public Shape shape;
+
+    private JacksonNode node;
+
+    @Setup
+    public void setup() {
+        node = (JacksonNode) new JacksonCodec().toJsonNode(Payloads.createDoc(shape));
+    }
+
+    @Benchmark
+    public long walkWrappers() {
+        return walk(node);
+    }
+
+    @Benchmark
+    public long walkCursor() {
+        return walk(node.cursor());
+    }
+
+    private static long walk(JsonNode node) {
+        switch (node.getNodeType()) {
+            case OBJECT:
+                long ret = 0;
+                Iterator<String> properties = node.getProperties();
+                while (properties.hasNext()) {
+                    ret += walk(node.get(properties.next()));
+                }
+                return ret;
+            case ARRAY:
+                ret = 0;
+                for (int i = 0; i < node.getSize(); i++) {
+                    ret += walk(node.get(i));
+                }
+                return ret;
+            case STRING:
+                return node.asString().length();
+            case NUMBER:
+                return node.asLong();
+            default:
+                return 1;
+        }
+    }
+
+    private static long walk(JacksonNodeCursor cursor) {
+        switch (cursor.getNodeType()) {
+            case OBJECT:
+                long ret = 0;
+                Iterator<String> properties = cursor.getProperties();
+                while (properties.hasNext()) {
+                    cursor.moveTo(properties.next());
+                    ret += walk(cursor);
+                    cursor.moveToParent();
+                }
+                return ret;
+            case ARRAY:
+                ret = 0;
+                int size = cursor.getSize();
+                for (int i = 0; i < size; i++) {
+                    cursor.moveTo(i);
+                    ret += walk(cursor);
+                    cursor.moveToParent();
+                }
+                return ret;
+            case STRING:
+                return cursor.asString().length();
+            case NUMBER:
+                return cursor.asLong();
+            default:
+                return 1;
+        }
+    }
+}
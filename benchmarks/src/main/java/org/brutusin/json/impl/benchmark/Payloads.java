@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.benchmark;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deterministic payload generators shared by the benchmarks.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public final class Payloads {
+
+    public enum Shape {
+
+        /**
+         * A few fields and two items.
+         */
+        SMALL(2, 2, 0),
+        /**
+         * Hundreds of attributes on a single object.
+         */
+        WIDE(500, 1, 0),
+        /**
+         * A hundred levels of nested objects.
+         */
+        DEEP(2, 2, 100),
+        /**
+         * Tens of thousands of items, around 2 MB of JSON.
+         */
+        LARGE(10, 20000, 0);
+
+        private final int attributes;
+        private final int items;
+        private final int depth;
+
+        private Shape(int attributes, int items, int depth) {
+            this.attributes = attributes;
+            this.items = items;
+            this.depth = depth;
+        }
+    }
+
+    private Payloads() {
+    }
+
+    public static Doc createDoc(Shape shape) {
+        Doc doc = new Doc();
+        doc.id = "doc-" + shape.name();
+        doc.attributes = new LinkedHashMap<String, String>();
+        for (int i = 0; i < shape.attributes; i++) {
+            doc.attributes.put("attribute" + i, "value of attribute " + i);
+        }
+        doc.items = new ArrayList<Item>(shape.items);
+        for (int i = 0; i < shape.items; i++) {
+            doc.items.add(createItem(i));
+        }
+        Map<String, Object> nested = null;
+        for (int i = shape.depth; i > 0; i--) {
+            Map<String, Object> level = new LinkedHashMap<String, Object>();
+            level.put("level", i);
+            level.put("name", "level " + i);
+            if (nested != null) {
+                level.put("next", nested);
+            }
+            nested = level;
+        }
+        doc.nested = nested;
+        return doc;
+    }
+
+    public static Item createItem(int i) {
+        Item item = new Item();
+        item.id = "item-" + i;
+        item.name = "Item number " + i;
+        item.count = i * 31L;
+        item.value = i / 7d;
+        item.active = i % 2 == 0;
+        item.tags = new ArrayList<String>();
+        item.tags.add("tag" + (i % 10));
+        item.tags.add("group" + (i % 3));
+        return item;
+    }
+
+    /**
+     * Schema generated for {@link Doc} is recursion free, so it can be used for
+     * schema generation and validation benchmarks.
+     */
+    public static class Doc {
+
+        private String id;
+        private Map<String, String> attributes;
+        private List<Item> items;
+        private Object nested;
+    }
+
+    public static class Item {
+
+        private String id;
+        private String name;
+        private long count;
+        private double value;
+        private boolean active;
+        private List<String> tags;
+    }
+
+    public static class Attachments {
+
+        private String name;
+        private InputStream first;
+        private InputStream second;
+        private List<InputStream> others;
+
+        public Attachments() {
+        }
+
+        public Attachments(String name, InputStream first, InputStream second, List<InputStream> others) {
+            this.name = name;
+            this.first = first;
+            this.second = second;
+            this.others = others;
+        }
+    }
+}
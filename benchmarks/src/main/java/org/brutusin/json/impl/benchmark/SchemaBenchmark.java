@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.ValidationException;
+import org.brutusin.json.impl.JacksonCodec;
+import org.brutusin.json.impl.JacksonSchema;
+import org.brutusin.json.impl.benchmark.Payloads.Doc;
+import org.brutusin.json.impl.benchmark.Payloads.Shape;
+import org.brutusin.json.spi.JsonNode;
+import org.brutusin.json.spi.JsonSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Schema generation, schema parsing and validation, both over parsed trees
+ * and streaming from the raw bytes.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchemaBenchmark {
+
+    @Param({"SMALL", "WIDE", "DEEP", "LARGE"})
+    public Shape shape;
+
+    private JacksonCodec codec;
+    private String schemaString;
+    private JsonSchema schema;
+    private JsonNode node;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws ParseException {
+        codec = new JacksonCodec();
+        schemaString = codec.getSchemaString(Doc.class);
+        schema = codec.parseSchema(schemaString);
+        node = codec.toJsonNode(Payloads.createDoc(shape));
+        bytes = node.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    @Benchmark
+    public String getSchemaString() {
+        return codec.getSchemaString(Doc.class);
+    }
+
+    @Benchmark
+    public JsonSchema parseSchema() throws ParseException {
+        return codec.parseSchema(schemaString);
+    }
+
+    @Benchmark
+    public JsonSchema validate() throws ValidationException {
+        schema.validate(node);
+        return schema;
+    }
+
+    @Benchmark
+    public JsonSchema parseAndValidate() throws ParseException, ValidationException {
+        schema.validate(codec.parse(new ByteArrayInputStream(bytes)));
+        return schema;
+    }
+
+    @Benchmark
+    public JsonSchema validateStreaming() throws ParseException, ValidationException {
+        ((JacksonSchema) schema).getStreamingValidator().validate(new ByteArrayInputStream(bytes));
+        return schema;
+    }
+
+    @Benchmark
+    public JsonSchema parseSchemaAndValidate() throws ParseException, ValidationException {
+        JsonSchema s = codec.parseSchema(schemaString);
+        s.validate(node);
+        return s;
+    }
+
+    /**
+     * Schema generation on a fresh codec, so memoization does not apply.
+     */
+    @State(Scope.Thread)
+    public static class ColdCodec {
+
+        private JacksonCodec codec;
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            codec = new JacksonCodec();
+        }
+    }
+
+    @Benchmark
+    public String getSchemaStringCold(ColdCodec cold) {
+        return cold.codec.getSchemaString(Doc.class);
+    }
+}
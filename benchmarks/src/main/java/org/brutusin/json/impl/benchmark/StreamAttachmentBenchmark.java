@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.impl.JacksonCodec;
+import org.brutusin.json.impl.benchmark.Payloads.Attachments;
+import org.brutusin.json.spi.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization and binding of objects holding <code>InputStream</code>
+ * attachments.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamAttachmentBenchmark {
+
+    @Param({"2", "100"})
+    public int streams;
+
+    private JacksonCodec codec;
+    private Attachments attachments;
+    private String json;
+    private Map<String, InputStream> streamMap;
+    private JsonNode node;
+
+    @Setup
+    public void setup() throws ParseException {
+        codec = new JacksonCodec();
+        List<InputStream> others = new ArrayList<InputStream>();
+        for (int i = 2; i < streams; i++) {
+            others.add(new ByteArrayInputStream(new byte[0]));
+        }
+        attachments = new Attachments("attachments", new ByteArrayInputStream(new byte[0]), new ByteArrayInputStream(new byte[0]), others);
+        node = codec.toJsonNode(attachments);
+        json = node.toString();
+        streamMap = codec.getStreams(node);
+    }
+
+    @Benchmark
+    public String transform() {
+        return codec.transform(attachments);
+    }
+
+    @Benchmark
+    public JsonNode toJsonNode() {
+        return codec.toJsonNode(attachments);
+    }
+
+    @Benchmark
+    public Object parseWithStreams() throws ParseException {
+        return codec.parse(json, Attachments.class, streamMap);
+    }
+
+    @Benchmark
+    public Attachments load() {
+        return codec.load(node, Attachments.class);
+    }
+}
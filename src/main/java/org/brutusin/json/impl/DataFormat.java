@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+/**
+ * Wire encodings supported by the byte oriented methods of
+ * {@link JacksonCodec}. Text oriented methods (<code>String</code>,
+ * <code>Reader</code> and <code>Writer</code> based) always use JSON.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public enum DataFormat {
+
+    /**
+     * UTF-8 encoded JSON text
+     */
+    JSON,
+    /**
+     * Smile binary JSON
+     */
+    SMILE,
+    /**
+     * Concise Binary Object Representation (RFC 7049)
+     */
+    CBOR
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.fasterxml.jackson.databind.node.MissingNode;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.brutusin.json.spi.JsonNode;
+
+/**
+ * Lazy node over the bytes of a JSON document and its structural index (see
+ * {@link JacksonCodec#parseLazy(byte[])}). Navigation only walks the index;
+ * values are decoded when read, and no tree is built unless requested with
+ * {@link #toJacksonNode()}. Retained memory is the document bytes plus around
+ * 17 bytes per value, instead of a node object (and its decoded content) per
+ * value.
+ * <p>
+ * Accessors follow the semantics of {@link JacksonNode}, except for
+ * duplicate member names: {@link #get(String)} returns the last value, but
+ * size and properties report every occurrence. The string representation is
+ * the JSON text of the value as found in the input. Equality is value based,
+ * as for {@link JacksonNode}, and holds between both implementations.
+ * <p>
+ * Scalar accessors only decode scalar values; containers convert to the
+ * defaults of Jackson containers (<code>0</code>, <code>false</code>,
+ * <code>""</code>) without being materialized.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public final class IndexedJsonNode implements JsonNode {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final JsonIndex index;
+    private final int id;
+    private final IndexedJsonNode parentNode;
+    private final Map<String, InputStream> streams;
+    private int[] elements;
+    private com.fasterxml.jackson.databind.JsonNode value;
+
+    IndexedJsonNode(JsonIndex index, Map<String, InputStream> streams) {
+        this.index = index;
+        this.id = 0;
+        this.parentNode = null;
+        this.streams = streams;
+    }
+
+    private IndexedJsonNode(IndexedJsonNode parentNode, int id) {
+        this.index = parentNode.index;
+        this.id = id;
+        this.parentNode = parentNode;
+        this.streams = parentNode.streams;
+    }
+
+    public Map<String, InputStream> getStreams() {
+        return streams;
+    }
+
+    @Override
+    public IndexedJsonNode getParentNode() {
+        return parentNode;
+    }
+
+    @Override
+    public Type getNodeType() {
+        switch (index.kind(id)) {
+            case JsonIndex.OBJECT:
+                return Type.OBJECT;
+            case JsonIndex.ARRAY:
+                return Type.ARRAY;
+            case JsonIndex.STRING:
+                return Type.STRING;
+            case JsonIndex.NUMBER:
+                return Type.NUMBER;
+            case JsonIndex.BOOLEAN:
+                return Type.BOOLEAN;
+            default:
+                return Type.NULL;
+        }
+    }
+
+    @Override
+    public InputStream asStream() {
+        if (getNodeType() != Type.STRING) {
+            throw new UnsupportedOperationException("Node is of type " + getNodeType());
+        }
+        if (streams == null) {
+            return null;
+        }
+        return streams.get(asString());
+    }
+
+    @Override
+    public Boolean asBoolean() {
+        return getScalarValue().asBoolean();
+    }
+
+    @Override
+    public Integer asInteger() {
+        return getScalarValue().asInt();
+    }
+
+    @Override
+    public Long asLong() {
+        return getScalarValue().asLong();
+    }
+
+    @Override
+    public Double asDouble() {
+        return getScalarValue().asDouble();
+    }
+
+    @Override
+    public String asString() {
+        if (index.kind(id) == JsonIndex.STRING) {
+            return index.decodeString(index.start(id), index.end(id));
+        }
+        return getScalarValue().asText();
+    }
+
+    @Override
+    public int getSize() {
+        byte kind = index.kind(id);
+        if (kind == JsonIndex.ARRAY) {
+            return getElements().length;
+        } else if (kind == JsonIndex.OBJECT) {
+            int ret = 0;
+            for (int child = id + 1; child < index.next(id); child = index.next(child)) {
+                ret++;
+            }
+            return ret;
+        }
+        return 0;
+    }
+
+    @Override
+    public IndexedJsonNode get(int i) {
+        if (index.kind(id) != JsonIndex.ARRAY) {
+            return null;
+        }
+        int[] ids = getElements();
+        if (i < 0 || i >= ids.length) {
+            return null;
+        }
+        return new IndexedJsonNode(this, ids[i]);
+    }
+
+    @Override
+    public Iterator<String> getProperties() {
+        if (index.kind(id) != JsonIndex.OBJECT) {
+            return Collections.<String>emptyList().iterator();
+        }
+        return new Iterator<String>() {
+            private int child = id + 1;
+
+            @Override
+            public boolean hasNext() {
+                return child < index.next(id);
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String ret = index.key(child);
+                child = index.next(child);
+                return ret;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public IndexedJsonNode get(String property) {
+        if (index.kind(id) != JsonIndex.OBJECT) {
+            return null;
+        }
+        IndexedJsonNode ret = null;
+        for (int child = id + 1; child < index.next(id); child = index.next(child)) {
+            // last occurrence wins, as in Jackson trees
+            if (index.keyEquals(child, property)) {
+                ret = new IndexedJsonNode(this, child);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Builds the Jackson tree of this node.
+     *
+     * @return
+     */
+    public JacksonNode toJacksonNode() {
+        return new JacksonNode(getValue(), streams);
+    }
+
+    byte[] getBytes() {
+        return index.bytes;
+    }
+
+    int getStart() {
+        return index.start(id);
+    }
+
+    int getEnd() {
+        return index.end(id);
+    }
+
+    @Override
+    public String toString() {
+        return new String(index.bytes, index.start(id), index.end(id) - index.start(id), UTF8);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof IndexedJsonNode) {
+            return getValue().equals(((IndexedJsonNode) obj).getValue());
+        }
+        if (obj instanceof JacksonNode) {
+            return getValue().equals(((JacksonNode) obj).getNode());
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return getValue().hashCode();
+    }
+
+    /**
+     * Materialized tree of this node, built on first use.
+     */
+    com.fasterxml.jackson.databind.JsonNode getValue() {
+        if (value == null) {
+            value = index.materialize(id);
+        }
+        return value;
+    }
+
+    /**
+     * Value of scalar nodes. Containers are not materialized, and a missing
+     * node stands for them, that converts as they do.
+     */
+    private com.fasterxml.jackson.databind.JsonNode getScalarValue() {
+        byte kind = index.kind(id);
+        if (kind == JsonIndex.OBJECT || kind == JsonIndex.ARRAY) {
+            return MissingNode.getInstance();
+        }
+        return getValue();
+    }
+
+    /**
+     * Ids of the array elements, resolved on first positional access.
+     */
+    private int[] getElements() {
+        if (elements == null) {
+            int[] ids = new int[8];
+            int size = 0;
+            for (int child = id + 1; child < index.next(id); child = index.next(child)) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+                ids[size++] = child;
+            }
+            elements = Arrays.copyOf(ids, size);
+        }
+        return elements;
+    }
+}
@@ -17,24 +17,57 @@ package org.brutusin.json.impl;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.core.io.JsonStringEncoder;
-import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.core.io.SegmentedStringWriter;
+import com.fasterxml.jackson.core.util.BufferRecycler;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Type;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import org.brutusin.commons.Pair;
 import org.brutusin.commons.io.MetaDataInputStream;
 import org.brutusin.json.spi.JsonNode;
@@ -44,6 +77,10 @@ import org.brutusin.json.impl.serializers.InputStreamDeserializer;
 import org.brutusin.json.impl.serializers.InputStreamSerializer;
 import org.brutusin.json.impl.serializers.JsonNodeDeserializer;
 import org.brutusin.json.impl.serializers.JsonNodeSerializer;
+import org.brutusin.json.impl.metrics.CodecMetrics;
+import org.brutusin.json.impl.metrics.CodecMetrics.Operation;
+import org.brutusin.json.impl.metrics.NoOpCodecMetrics;
+import org.brutusin.json.impl.pool.BufferRecyclerPool;
 import org.brutusin.json.impl.serializers.SerializationContext;
 import org.brutusin.json.spi.JsonCodec;
 
@@ -52,16 +89,21 @@ import org.brutusin.json.spi.JsonCodec;
  */
 public class JacksonCodec extends JsonCodec {
 
-    private static final Map<Class, String> DEFAULT_FORMAT_MAP = new HashMap();
+    public static final String AFTERBURNER_PROPERTY = "org.brutusin.json.afterburner";
 
-    static {
-        DEFAULT_FORMAT_MAP.put(File.class, "file");
-        DEFAULT_FORMAT_MAP.put(InputStream.class, "inputstream");
-        DEFAULT_FORMAT_MAP.put(MetaDataInputStream.class, "inputstream");
-    }
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+    private static final int MAX_CACHED_TYPES = 1000;
 
     private final ObjectMapper mapper;
     private final JacksonFactoryWrapper schemaFactory;
+    private volatile ConcurrentMap<Type, String> schemaCache = new ConcurrentHashMap();
+    private volatile ConcurrentMap<Type, ObjectReader> readerCache = new ConcurrentHashMap();
+    private volatile ConcurrentMap<Class, ObjectWriter> writerCache = new ConcurrentHashMap();
+    private volatile CodecMetrics metrics = NoOpCodecMetrics.INSTANCE;
+    private final SmileFactory smileFactory;
+    private final CBORFactory cborFactory;
+    private volatile DataFormat dataFormat = DataFormat.JSON;
+    private volatile BufferRecyclerPool bufferRecyclerPool;
 
     public JacksonCodec() {
         this(null, null);
@@ -69,7 +111,7 @@ public class JacksonCodec extends JsonCodec {
 
     public JacksonCodec(ObjectMapper mapper, JacksonFactoryWrapper schemaFactory) {
         if (mapper == null) {
-            mapper = new ObjectMapper();
+            mapper = new ObjectMapper(new RecyclingJsonFactory());
 
             mapper.setVisibility(
                     mapper.getSerializationConfig().
@@ -87,12 +129,177 @@ public class JacksonCodec extends JsonCodec {
             testModule.addDeserializer(InputStream.class, new InputStreamDeserializer());
             testModule.addDeserializer(MetaDataInputStream.class, new InputStreamDeserializer());
             mapper.registerModule(testModule);
+            if (Boolean.getBoolean(AFTERBURNER_PROPERTY)) {
+                mapper.registerModule(new AfterburnerModule());
+            }
         }
         if (schemaFactory == null) {
-            schemaFactory = new JacksonFactoryWrapper(new HashMap<Class, String>(DEFAULT_FORMAT_MAP));
+            schemaFactory = new JacksonFactoryWrapper(createDefaultFormatMap());
         }
         this.mapper = mapper;
         this.schemaFactory = schemaFactory;
+        this.smileFactory = new SmileFactory(mapper);
+        this.cborFactory = new CBORFactory(mapper);
+    }
+
+    /**
+     * Registers the Jackson Afterburner module, that replaces reflective
+     * property access and bean instantiation by generated bytecode. Visibility
+     * rules are kept; private fields and constructors (not accessible from
+     * generated classes) are still accessed through reflection. On Java 9+,
+     * package-private members are only optimized when <code>java.lang</code>
+     * is opened to Afterburner
+     * (<code>--add-opens java.base/java.lang=ALL-UNNAMED</code>).
+     * <p>
+     * Must be invoked before the codec is used, serializers already built are
+     * not affected. Equivalent to setting the system property
+     * {@value #AFTERBURNER_PROPERTY} to <code>true</code> for codecs with the
+     * default mapper.
+     */
+    public void enableAfterburner() {
+        mapper.registerModule(new AfterburnerModule());
+        clearBindingCaches();
+    }
+
+    /**
+     * Resolves and caches the readers (and writers, for classes) of the
+     * specified types, so that their first use does not pay the introspection
+     * and (de)serializer construction costs.
+     *
+     * @param types
+     */
+    public void warmUp(Type... types) {
+        for (Type type : types) {
+            getReader(type);
+            if (type instanceof Class) {
+                getWriterFor((Class) type);
+            }
+        }
+    }
+
+    /**
+     * Readers are immutable and hold the resolved type and root deserializer,
+     * so they are cached per type. Caching stops at {@value #MAX_CACHED_TYPES}
+     * types, to bound memory when types are created dynamically.
+     *
+     * @param type
+     * @return
+     */
+    private ObjectReader getReader(Type type) {
+        ObjectReader ret = readerCache.get(type);
+        if (ret == null) {
+            ret = mapper.readerFor(mapper.constructType(type));
+            if (readerCache.size() < MAX_CACHED_TYPES) {
+                readerCache.putIfAbsent(type, ret);
+            }
+        }
+        return ret;
+    }
+
+    private ObjectWriter getWriter(Object o) {
+        if (o == null) {
+            return mapper.writer();
+        }
+        return getWriterFor(o.getClass());
+    }
+
+    private ObjectWriter getWriterFor(Class clazz) {
+        ObjectWriter ret = writerCache.get(clazz);
+        if (ret == null) {
+            ret = mapper.writerFor(clazz);
+            if (writerCache.size() < MAX_CACHED_TYPES) {
+                writerCache.putIfAbsent(clazz, ret);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Invoked when the mapper configuration changes. Serializers already
+     * built by the mapper are discarded too, so that new modules apply to
+     * types used before.
+     */
+    private void clearBindingCaches() {
+        SerializerProvider provider = mapper.getSerializerProvider();
+        if (provider instanceof DefaultSerializerProvider) {
+            ((DefaultSerializerProvider) provider).flushCachedSerializers();
+        }
+        this.readerCache = new ConcurrentHashMap();
+        this.writerCache = new ConcurrentHashMap();
+    }
+
+    ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    public DataFormat getDataFormat() {
+        return dataFormat;
+    }
+
+    /**
+     * Sets the encoding used by the byte oriented methods (input streams, byte
+     * arrays, byte buffers, output streams and channels) of this codec.
+     *
+     * @param dataFormat null restores the default {@link DataFormat#JSON}
+     */
+    public void setDataFormat(DataFormat dataFormat) {
+        this.dataFormat = dataFormat == null ? DataFormat.JSON : dataFormat;
+    }
+
+    public BufferRecyclerPool getBufferRecyclerPool() {
+        return bufferRecyclerPool;
+    }
+
+    /**
+     * Sets the pool providing the Jackson buffers for JSON parsing and
+     * generation. By default Jackson keeps a buffer recycler per thread, that
+     * gives no reuse to short-lived threads (as in thread-per-request
+     * servers) and retains buffers in every thread of large pools. A shared
+     * pool, like {@link org.brutusin.json.impl.pool.StripedBufferRecyclerPool},
+     * bounds the retained buffers and reuses them across threads.
+     * <p>
+     * Only applies to the JSON format (binary formats keep the Jackson
+     * default), and requires the default mapper of the codec.
+     *
+     * @param pool null restores the Jackson thread-local recyclers
+     * @throws IllegalStateException if the codec has been created with a
+     * custom mapper
+     */
+    public void setBufferRecyclerPool(BufferRecyclerPool pool) {
+        if (pool != null && !(mapper.getFactory() instanceof RecyclingJsonFactory)) {
+            throw new IllegalStateException("Buffer recycler pools require the default mapper of the codec");
+        }
+        this.bufferRecyclerPool = pool;
+    }
+
+    public CodecMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the hook receiving the metrics of the operations of this codec and
+     * of the schemas it parses from then on.
+     *
+     * @param metrics null restores the default no-op implementation
+     */
+    public void setMetrics(CodecMetrics metrics) {
+        this.metrics = metrics == null ? NoOpCodecMetrics.INSTANCE : metrics;
+    }
+
+    /**
+     * Not held in a static field: instantiating this class before
+     * {@link JsonCodec} is initialized makes the service loader call the
+     * constructor while the static initializers of this class are still
+     * pending.
+     *
+     * @return
+     */
+    private static Map<Class, String> createDefaultFormatMap() {
+        Map<Class, String> ret = new ConcurrentHashMap();
+        ret.put(File.class, "file");
+        ret.put(InputStream.class, "inputstream");
+        ret.put(MetaDataInputStream.class, "inputstream");
+        return ret;
     }
 
     static String addVersion(String jsonSchema) {
@@ -130,30 +337,179 @@ public class JacksonCodec extends JsonCodec {
             }
         });
         mapper.registerModule(testModule);
+        this.schemaCache = new ConcurrentHashMap();
+        clearBindingCaches();
     }
 
     @Override
     public String transform(Object o) {
-        return transformAndGetSerializationCtx(o).getElement1();
+        long start = startTimer(Operation.TRANSFORM);
+        try {
+            String json = writeValueAsString(getWriter(o), o);
+            stopTimer(Operation.TRANSFORM, start, json.length());
+            return json;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
     }
 
-    private Pair<String, Map> transformAndGetSerializationCtx(Object o) {
+    /**
+     * Writes the representation of the object to the specified stream, in the
+     * format of this codec (UTF-8 encoded JSON by default). The stream is
+     * flushed but not closed.
+     *
+     * @param o
+     * @param os
+     * @return the streams referenced by the written document, or null if none
+     */
+    public Map<String, InputStream> transform(Object o, OutputStream os) {
+        return transform(o, os, dataFormat);
+    }
+
+    /**
+     * Writes the representation of the object to the specified stream in the
+     * specified format. The stream is flushed but not closed.
+     *
+     * @param o
+     * @param os
+     * @param format
+     * @return the streams referenced by the written document, or null if none
+     */
+    public Map<String, InputStream> transform(Object o, OutputStream os, DataFormat format) {
+        CountingOutputStream counter = metrics.isEnabled() ? new CountingOutputStream(os) : null;
+        if (counter != null) {
+            os = counter;
+        }
+        BufferRecyclerPool pool = this.bufferRecyclerPool;
+        if (pool == null || format != DataFormat.JSON) {
+            try {
+                return transform(o, getFactory(format).createGenerator(os, JsonEncoding.UTF8), Operation.TRANSFORM, counter);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        BufferRecycler recycler = pool.acquire();
         try {
-            String json = mapper.writeValueAsString(o);
-            SerializationContext sCtx = SerializationContext.getCurrentContext();
-            return new Pair<String, Map>(json, sCtx == null ? null : sCtx.getMap());
-        } catch (JsonProcessingException ex) {
+            return transform(o, getRecyclingFactory().createGenerator(os, recycler), Operation.TRANSFORM, counter);
+        } catch (IOException ex) {
             throw new RuntimeException(ex);
         } finally {
-            SerializationContext.closeCurrentContext();
+            pool.release(recycler);
         }
     }
 
+    /**
+     * Writes the JSON representation of the object to the specified writer.
+     * The writer is flushed but not closed.
+     *
+     * @param o
+     * @param writer
+     * @return the streams referenced by the written document, or null if none
+     */
+    public Map<String, InputStream> transform(Object o, Writer writer) {
+        CountingWriter counter = metrics.isEnabled() ? new CountingWriter(writer) : null;
+        if (counter != null) {
+            writer = counter;
+        }
+        BufferRecyclerPool pool = this.bufferRecyclerPool;
+        if (pool == null) {
+            try {
+                return transform(o, mapper.getFactory().createGenerator(writer), Operation.TRANSFORM, counter);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        BufferRecycler recycler = pool.acquire();
+        try {
+            return transform(o, getRecyclingFactory().createGenerator(writer, recycler), Operation.TRANSFORM, counter);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            pool.release(recycler);
+        }
+    }
+
+    /**
+     * Writes the representation of the object to the specified channel, in the
+     * format of this codec (UTF-8 encoded JSON by default). The channel is not
+     * closed.
+     *
+     * @param o
+     * @param channel
+     * @return the streams referenced by the written document, or null if none
+     */
+    public Map<String, InputStream> transform(Object o, WritableByteChannel channel) {
+        return transform(o, Channels.newOutputStream(channel));
+    }
+
+    private Map<String, InputStream> transform(Object o, JsonGenerator gen, Operation op) throws IOException {
+        return transform(o, gen, op, null);
+    }
+
+    /**
+     * Writes the object to the generator and closes it. The size of the output
+     * is taken from the counter wrapping the target (bytes, or chars for
+     * writers), -1 when there is none. The streams found are collected in a
+     * context passed as a per-call attribute of the writer.
+     */
+    private Map<String, InputStream> transform(Object o, JsonGenerator gen, Operation op, Counter counter) throws IOException {
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        long start = startTimer(op);
+        SerializationContext sCtx = new SerializationContext();
+        try {
+            getWriter(o).withAttribute(SerializationContext.class, sCtx).writeValue(gen, o);
+        } finally {
+            gen.close();
+        }
+        stopTimer(op, start, counter == null ? -1 : counter.getCount());
+        return sCtx.getMap().isEmpty() ? null : sCtx.getMap();
+    }
+
+    /**
+     * Equivalent to {@link ObjectWriter#writeValueAsString(Object)}, with the
+     * buffers of the pool when set.
+     */
+    private String writeValueAsString(ObjectWriter writer, Object value) throws IOException {
+        BufferRecyclerPool pool = this.bufferRecyclerPool;
+        if (pool == null) {
+            return writer.writeValueAsString(value);
+        }
+        BufferRecycler recycler = pool.acquire();
+        try {
+            SegmentedStringWriter sw = new SegmentedStringWriter(recycler);
+            JsonGenerator gen = getRecyclingFactory().createGenerator(sw, recycler);
+            try {
+                writer.writeValue(gen, value);
+            } finally {
+                gen.close();
+            }
+            return sw.getAndClear();
+        } finally {
+            pool.release(recycler);
+        }
+    }
+
+    /**
+     * Serializes the object into a token buffer that is then read as a tree,
+     * avoiding the intermediate JSON text. Binary and numeric values are
+     * normalized (see {@link NormalizingGenerator}) so the result equals the
+     * tree parsed from {@link #transform(Object)}.
+     *
+     * @param o
+     * @return
+     */
     @Override
     public JsonNode toJsonNode(Object o) {
-        Pair<String, Map> pair = transformAndGetSerializationCtx(o);
+        long start = startTimer(Operation.TO_JSON_NODE);
+        TokenBuffer buffer = new TokenBuffer(mapper, false);
         try {
-            return parse(pair.getElement1(), pair.getElement2());
+            boolean quoteNonNumeric = mapper.getFactory().isEnabled(JsonGenerator.Feature.QUOTE_NON_NUMERIC_NUMBERS);
+            Map<String, InputStream> streams = transform(o, new NormalizingGenerator(buffer, quoteNonNumeric), null);
+            JsonNode ret = readTree(buffer.asParser(), streams, null);
+            stopTimer(Operation.TO_JSON_NODE, start, -1);
+            return ret;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
         } catch (ParseException pe) {
             throw new AssertionError();
         }
@@ -175,6 +531,8 @@ public class JacksonCodec extends JsonCodec {
         if (node instanceof JacksonNode) {
             JacksonNode jacksonNode = (JacksonNode) node;
             return jacksonNode.getStreams();
+        } else if (node instanceof IndexedJsonNode) {
+            return ((IndexedJsonNode) node).getStreams();
         }
         return null;
     }
@@ -184,62 +542,764 @@ public class JacksonCodec extends JsonCodec {
         if (json == null || json.trim().isEmpty()) {
             return null;
         }
+        return readValue(createParser(json), getReader(type));
+    }
+
+    @Override
+    public <T> T parse(String json, Class<T> clazz) throws ParseException {
+        if (json == null || json.trim().isEmpty()) {
+            return null;
+        }
+        return (T) readValue(createParser(json), getReader(clazz));
+    }
+
+    public Pair<Object, Integer> parse(String json, Type type, Map<String, InputStream> streams) throws ParseException {
+        if (json == null || json.trim().isEmpty()) {
+            return null;
+        }
+        return readValue(createParser(json), getReader(type), streams);
+    }
+
+    public <T> Pair<T, Integer> parse(String json, Class<T> clazz, Map<String, InputStream> streams) throws ParseException {
+        if (json == null || json.trim().isEmpty()) {
+            return null;
+        }
+        return (Pair<T, Integer>) readValue(createParser(json), getReader(clazz), streams);
+    }
+
+    /*
+     * Streaming entry points. Content is read directly by the Jackson parser,
+     * without building an intermediate String. Empty input returns null, as
+     * the typed String based methods do (note that parse(String) rejects
+     * blank input with an IllegalArgumentException instead). Input streams
+     * and readers are closed once parsed.
+     */
+    public JsonNode parse(InputStream is) throws ParseException {
+        return parse(is, (Map) null);
+    }
+
+    public JsonNode parse(InputStream is, Map<String, InputStream> streams) throws ParseException {
+        return readTree(createParser(is), streams);
+    }
+
+    public <T> T parse(InputStream is, Class<T> clazz) throws ParseException {
+        return (T) readValue(createParser(is), getReader(clazz));
+    }
+
+    public Object parse(InputStream is, Type type) throws ParseException {
+        return readValue(createParser(is), getReader(type));
+    }
+
+    public <T> Pair<T, Integer> parse(InputStream is, Class<T> clazz, Map<String, InputStream> streams) throws ParseException {
+        return (Pair<T, Integer>) readValue(createParser(is), getReader(clazz), streams);
+    }
+
+    public Pair<Object, Integer> parse(InputStream is, Type type, Map<String, InputStream> streams) throws ParseException {
+        return readValue(createParser(is), getReader(type), streams);
+    }
+
+    /*
+     * Per call format selection, for codecs mixing encodings.
+     */
+    public JsonNode parse(InputStream is, DataFormat format) throws ParseException {
+        return readTree(createParser(is, format), null);
+    }
+
+    public <T> T parse(InputStream is, Class<T> clazz, DataFormat format) throws ParseException {
+        return (T) readValue(createParser(is, format), getReader(clazz));
+    }
+
+    public <T> Pair<T, Integer> parse(InputStream is, Class<T> clazz, Map<String, InputStream> streams, DataFormat format) throws ParseException {
+        return (Pair<T, Integer>) readValue(createParser(is, format), getReader(clazz), streams);
+    }
+
+    public JsonNode parse(Reader reader) throws ParseException {
+        return parse(reader, (Map) null);
+    }
+
+    public JsonNode parse(Reader reader, Map<String, InputStream> streams) throws ParseException {
+        return readTree(createParser(reader), streams);
+    }
+
+    public <T> T parse(Reader reader, Class<T> clazz) throws ParseException {
+        return (T) readValue(createParser(reader), getReader(clazz));
+    }
+
+    public Object parse(Reader reader, Type type) throws ParseException {
+        return readValue(createParser(reader), getReader(type));
+    }
+
+    public <T> Pair<T, Integer> parse(Reader reader, Class<T> clazz, Map<String, InputStream> streams) throws ParseException {
+        return (Pair<T, Integer>) readValue(createParser(reader), getReader(clazz), streams);
+    }
+
+    public Pair<Object, Integer> parse(Reader reader, Type type, Map<String, InputStream> streams) throws ParseException {
+        return readValue(createParser(reader), getReader(type), streams);
+    }
+
+    public JsonNode parse(byte[] json, int offset, int len) throws ParseException {
+        return parse(json, offset, len, (Map) null);
+    }
+
+    public JsonNode parse(byte[] json, int offset, int len, Map<String, InputStream> streams) throws ParseException {
+        return readTree(createParser(json, offset, len), streams);
+    }
+
+    public <T> T parse(byte[] json, int offset, int len, Class<T> clazz) throws ParseException {
+        return (T) readValue(createParser(json, offset, len), getReader(clazz));
+    }
+
+    public Object parse(byte[] json, int offset, int len, Type type) throws ParseException {
+        return readValue(createParser(json, offset, len), getReader(type));
+    }
+
+    public <T> Pair<T, Integer> parse(byte[] json, int offset, int len, Class<T> clazz, Map<String, InputStream> streams) throws ParseException {
+        return (Pair<T, Integer>) readValue(createParser(json, offset, len), getReader(clazz), streams);
+    }
+
+    public Pair<Object, Integer> parse(byte[] json, int offset, int len, Type type, Map<String, InputStream> streams) throws ParseException {
+        return readValue(createParser(json, offset, len), getReader(type), streams);
+    }
+
+    public JsonNode parse(byte[] json) throws ParseException {
+        return parse(json, 0, json == null ? 0 : json.length);
+    }
+
+    public <T> T parse(byte[] json, Class<T> clazz) throws ParseException {
+        return parse(json, 0, json == null ? 0 : json.length, clazz);
+    }
+
+    public Object parse(byte[] json, Type type) throws ParseException {
+        return parse(json, 0, json == null ? 0 : json.length, type);
+    }
+
+    /*
+     * Per call format selection of byte arrays.
+     */
+    public JsonNode parse(byte[] json, DataFormat format) throws ParseException {
+        return readTree(createParser(json, 0, json == null ? 0 : json.length, format), null);
+    }
+
+    public <T> T parse(byte[] json, Class<T> clazz, DataFormat format) throws ParseException {
+        return (T) readValue(createParser(json, 0, json == null ? 0 : json.length, format), getReader(clazz));
+    }
+
+    public Pair<Object, Integer> parse(byte[] json, int offset, int len, Type type, Map<String, InputStream> streams, DataFormat format) throws ParseException {
+        return readValue(createParser(json, offset, len, format), getReader(type), streams);
+    }
+
+    /*
+     * ByteBuffer entry points consume the remaining bytes of the buffer. Heap
+     * buffers are parsed in place, direct buffers through a stream view.
+     */
+    public JsonNode parse(ByteBuffer buffer) throws ParseException {
+        return parse(buffer, (Map) null);
+    }
+
+    public JsonNode parse(ByteBuffer buffer, Map<String, InputStream> streams) throws ParseException {
+        return readTree(createParser(buffer), streams);
+    }
+
+    public <T> T parse(ByteBuffer buffer, Class<T> clazz) throws ParseException {
+        return (T) readValue(createParser(buffer), getReader(clazz));
+    }
+
+    public Object parse(ByteBuffer buffer, Type type) throws ParseException {
+        return readValue(createParser(buffer), getReader(type));
+    }
+
+    public <T> Pair<T, Integer> parse(ByteBuffer buffer, Class<T> clazz, Map<String, InputStream> streams) throws ParseException {
+        return (Pair<T, Integer>) readValue(createParser(buffer), getReader(clazz), streams);
+    }
+
+    public Pair<Object, Integer> parse(ByteBuffer buffer, Type type, Map<String, InputStream> streams) throws ParseException {
+        return readValue(createParser(buffer), getReader(type), streams);
+    }
+
+    /**
+     * Returns a reader of the JSON Lines content of the stream, binding each
+     * value to the specified class (<code>JsonNode.class</code> for trees).
+     * The reader must be closed when done.
+     *
+     * @param <T>
+     * @param is
+     * @param clazz
+     * @return
+     */
+    public <T> JsonLinesReader<T> readLines(InputStream is, Class<T> clazz) {
+        return new JsonLinesReader<T>(this, is, clazz);
+    }
+
+    /**
+     * Returns a reader of the JSON Lines content of the stream, decoding lines
+     * in parallel on the executor while preserving their order.
+     *
+     * @param <T>
+     * @param is
+     * @param clazz
+     * @param executor
+     * @param readAhead maximum number of lines read ahead of the consumer
+     * @return
+     */
+    public <T> JsonLinesReader<T> readLines(InputStream is, Class<T> clazz, Executor executor, int readAhead) {
+        return new JsonLinesReader<T>(this, is, clazz, executor, readAhead);
+    }
+
+    public <T> JsonLinesReader<T> readLines(Path path, Class<T> clazz) throws IOException {
+        return readLines(Files.newInputStream(path), clazz);
+    }
+
+    public <T> JsonLinesReader<T> readLines(Path path, Class<T> clazz, Executor executor, int readAhead) throws IOException {
+        return readLines(Files.newInputStream(path), clazz, executor, readAhead);
+    }
+
+    /**
+     * Returns a spliterator over the elements of the top-level array of the
+     * stream, decoded on demand.
+     *
+     * @param <T>
+     * @param is
+     * @param clazz element class (<code>JsonNode.class</code> for trees)
+     * @return
+     * @throws ParseException
+     */
+    public <T> JsonArraySpliterator<T> parseArray(InputStream is, Class<T> clazz) throws ParseException {
+        return parseArray(is, null, clazz);
+    }
+
+    /**
+     * Returns a spliterator over the elements of the array addressed by the
+     * JSON pointer, decoded on demand. Content before the array is skipped
+     * without being bound, and content after it is not read.
+     *
+     * @param <T>
+     * @param is
+     * @param pointer JSON pointer of the array, "" or null for the root
+     * @param clazz element class (<code>JsonNode.class</code> for trees)
+     * @return
+     * @throws ParseException
+     * @throws IllegalArgumentException if the pointer does not address an
+     * array
+     */
+    public <T> JsonArraySpliterator<T> parseArray(InputStream is, String pointer, Class<T> clazz) throws ParseException {
+        JsonParser parser = createParser(is);
         try {
-            JavaType jt = TypeFactory.defaultInstance().constructType(type);
-            return mapper.readValue(json, jt);
+            JsonArraySpliterator.moveTo(parser, pointer);
+            return new JsonArraySpliterator<T>(this, parser, clazz);
         } catch (JsonParseException ex) {
+            closeQuietly(parser);
             throw new ParseException(ex);
-        } catch (JsonMappingException ex) {
+        } catch (IOException ex) {
+            closeQuietly(parser);
             throw new RuntimeException(ex);
+        } catch (RuntimeException ex) {
+            closeQuietly(parser);
+            throw ex;
+        }
+    }
+
+    /**
+     * Writes the JSON representation of the object followed by the content of
+     * the streams it references, in a single framed envelope (see
+     * {@link JsonEnvelopeWriter}). File streams are transferred with
+     * {@link FileChannel#transferTo}, so writing to a file or socket channel
+     * does not copy their content through the heap. Attachment streams are
+     * closed, the target is not.
+     *
+     * @param o
+     * @param channel
+     */
+    public void writeEnvelope(Object o, WritableByteChannel channel) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Map<String, InputStream> streams = transform(o, baos, DataFormat.JSON);
+        try {
+            JsonEnvelopeWriter.write(baos.toByteArray(), streams, channel);
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
     }
 
-    @Override
-    public <T> T parse(String json, Class<T> clazz) throws ParseException {
-        if (json == null || json.trim().isEmpty()) {
+    /**
+     * Writes the envelope of the object to the stream, that is flushed but not
+     * closed.
+     *
+     * @param o
+     * @param os
+     * @see #writeEnvelope(Object, WritableByteChannel)
+     */
+    public void writeEnvelope(Object o, OutputStream os) {
+        if (os instanceof FileOutputStream) {
+            writeEnvelope(o, ((FileOutputStream) os).getChannel());
+            return;
+        }
+        writeEnvelope(o, Channels.newChannel(os));
+        try {
+            os.flush();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Reads an envelope from the stream, binding its document to the
+     * specified class. Attachments are consumed in order from the stream. The
+     * returned reader must be closed when done, that closes the stream. The
+     * stream is also closed if the envelope cannot be read.
+     *
+     * @param <T>
+     * @param is
+     * @param clazz
+     * @return
+     * @throws ParseException
+     */
+    public <T> JsonEnvelopeReader<T> readEnvelope(InputStream is, Class<T> clazz) throws ParseException {
+        try {
+            return new JsonEnvelopeReader<T>(this, is, clazz);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Reads an envelope from the current position of the channel. When all
+     * attachment lengths are known, attachments are read with positional
+     * reads, in any order. The channel is closed when the returned reader is,
+     * or if the envelope cannot be read.
+     *
+     * @param <T>
+     * @param channel
+     * @param clazz
+     * @return
+     * @throws ParseException
+     */
+    public <T> JsonEnvelopeReader<T> readEnvelope(FileChannel channel, Class<T> clazz) throws ParseException {
+        try {
+            return new JsonEnvelopeReader<T>(this, channel, clazz);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public <T> JsonEnvelopeReader<T> readEnvelope(Path path, Class<T> clazz) throws ParseException, IOException {
+        return readEnvelope(FileChannel.open(path, StandardOpenOption.READ), clazz);
+    }
+
+    /*
+     * File entry points. Files are memory-mapped in windows and parsed from
+     * the mapped pages, in the format of this codec, without reading the whole
+     * content into the heap.
+     */
+    public JsonNode parse(Path path) throws ParseException, IOException {
+        return readTree(createParser(new MappedInputStream(path)), null);
+    }
+
+    public <T> T parse(Path path, Class<T> clazz) throws ParseException, IOException {
+        return (T) readValue(createParser(new MappedInputStream(path)), getReader(clazz));
+    }
+
+    public Object parse(Path path, Type type) throws ParseException, IOException {
+        return readValue(createParser(new MappedInputStream(path)), getReader(type));
+    }
+
+    /**
+     * Returns a lazy node over the JSON content, backed by a structural index
+     * built in a single scan. Values are only decoded when accessed, so
+     * reading a few values of a large document costs a fraction of the memory
+     * of a full tree. The array must not be modified while the node is in
+     * use.
+     *
+     * @param json UTF-8 encoded JSON
+     * @return
+     * @throws ParseException
+     */
+    public IndexedJsonNode parseLazy(byte[] json) throws ParseException {
+        return parseLazy(json, null);
+    }
+
+    public IndexedJsonNode parseLazy(byte[] json, Map<String, InputStream> streams) throws ParseException {
+        if (json == null) {
+            return null;
+        }
+        long start = startTimer(Operation.PARSE);
+        JsonIndex index = JsonIndex.build(mapper, json, 0, json.length);
+        if (index == null) {
+            return null;
+        }
+        stopTimer(Operation.PARSE, start, json.length);
+        return new IndexedJsonNode(index, streams);
+    }
+
+    public IndexedJsonNode parseLazy(String json) throws ParseException {
+        return parseLazy(json == null ? null : json.getBytes(Charset.forName("UTF-8")), null);
+    }
+
+    /**
+     * Returns the values addressed by the JSON pointers, reading the stream
+     * once. Subtrees not leading to any pointer are skipped without being
+     * built, and the rest of the input is not read once all pointers have been
+     * found.
+     *
+     * @param is
+     * @param pointers
+     * @return values by pointer, in argument order; pointers not found are
+     * absent
+     * @throws ParseException
+     * @throws IllegalArgumentException if a pointer is not valid
+     */
+    public Map<String, JsonNode> project(InputStream is, String... pointers) throws ParseException {
+        return project(readProjection(createParser(is), pointers), pointers);
+    }
+
+    public Map<String, JsonNode> project(byte[] json, String... pointers) throws ParseException {
+        return project(readProjection(createParser(json, 0, json == null ? 0 : json.length), pointers), pointers);
+    }
+
+    public Map<String, JsonNode> project(String json, String... pointers) throws ParseException {
+        return project(readProjection(json == null ? null : createParser(json), pointers), pointers);
+    }
+
+    /**
+     * Binds the values addressed by the JSON pointers to the specified class,
+     * as if the rest of the document was not present. The class mirrors the
+     * structure of the document, only for the selected paths.
+     *
+     * @param <T>
+     * @param is
+     * @param clazz
+     * @param pointers
+     * @return the bound value, or null if no pointer was found
+     * @throws ParseException
+     * @see #project(InputStream, String...)
+     */
+    public <T> T project(InputStream is, Class<T> clazz, String... pointers) throws ParseException {
+        return project(readProjection(createParser(is), pointers), clazz);
+    }
+
+    public <T> T project(byte[] json, Class<T> clazz, String... pointers) throws ParseException {
+        return project(readProjection(createParser(json, 0, json == null ? 0 : json.length), pointers), clazz);
+    }
+
+    public <T> T project(String json, Class<T> clazz, String... pointers) throws ParseException {
+        return project(readProjection(json == null ? null : createParser(json), pointers), clazz);
+    }
+
+    private static Map<String, JsonNode> project(com.fasterxml.jackson.databind.JsonNode tree, String[] pointers) {
+        Map<String, JsonNode> ret = new LinkedHashMap();
+        if (tree != null) {
+            for (String pointer : pointers) {
+                com.fasterxml.jackson.databind.JsonNode node = tree.at(pointer);
+                if (!node.isMissingNode()) {
+                    ret.put(pointer, new JacksonNode(node));
+                }
+            }
+        }
+        return ret;
+    }
+
+    private <T> T project(com.fasterxml.jackson.databind.JsonNode tree, Class<T> clazz) throws ParseException {
+        if (tree == null) {
             return null;
         }
+        return (T) readValue(mapper.treeAsTokens(tree), getReader(clazz));
+    }
+
+    private com.fasterxml.jackson.databind.JsonNode readProjection(JsonParser parser, String[] pointers) throws ParseException {
+        if (parser == null) {
+            return null;
+        }
+        long start = startTimer(Operation.PARSE);
+        try {
+            com.fasterxml.jackson.databind.JsonNode ret = new JsonProjection(mapper, pointers).read(parser);
+            stopTimer(Operation.PARSE, start, parser);
+            return ret;
+        } catch (JsonProcessingException ex) {
+            throw new ParseException(ex);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            closeQuietly(parser);
+        }
+    }
+
+    /**
+     * Returns a non-blocking feeder that decodes the sequence of
+     * whitespace-separated JSON values pushed to it in chunks, passing each
+     * value to the consumer as soon as it is complete.
+     *
+     * @param <T>
+     * @param clazz value class (<code>JsonNode.class</code> for trees)
+     * @param consumer
+     * @return
+     */
+    public <T> JsonFeeder<T> newFeeder(Class<T> clazz, Consumer<? super T> consumer) {
+        return new JsonFeeder<T>(this, clazz, false, consumer);
+    }
+
+    /**
+     * Returns a non-blocking feeder that decodes the elements of the top-level
+     * JSON array pushed to it in chunks, passing each element to the consumer
+     * as soon as it is complete.
+     *
+     * @param <T>
+     * @param clazz element class (<code>JsonNode.class</code> for trees)
+     * @param consumer
+     * @return
+     */
+    public <T> JsonFeeder<T> newArrayFeeder(Class<T> clazz, Consumer<? super T> consumer) {
+        return new JsonFeeder<T>(this, clazz, true, consumer);
+    }
+
+    /*
+     * JSON parsers are created over a recycler of the pool, when set, that is
+     * returned to it when the parser is closed.
+     */
+    private JsonParser createParser(String json) {
         try {
-            return mapper.readValue(json, clazz);
+            BufferRecyclerPool pool = this.bufferRecyclerPool;
+            if (pool != null) {
+                return getRecyclingFactory().createParser(json, 0, 0, pool);
+            }
+            return mapper.getFactory().createParser(json);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private JsonParser createParser(InputStream is) {
+        return createParser(is, dataFormat);
+    }
+
+    private JsonParser createParser(InputStream is, DataFormat format) {
+        if (is == null) {
+            return null;
+        }
+        try {
+            BufferRecyclerPool pool = this.bufferRecyclerPool;
+            if (pool != null && format == DataFormat.JSON) {
+                return getRecyclingFactory().createParser(is, 0, 0, pool);
+            }
+            return getFactory(format).createParser(is);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private JsonParser createParser(Reader reader) {
+        if (reader == null) {
+            return null;
+        }
+        try {
+            BufferRecyclerPool pool = this.bufferRecyclerPool;
+            if (pool != null) {
+                return getRecyclingFactory().createParser(reader, 0, 0, pool);
+            }
+            return mapper.getFactory().createParser(reader);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private JsonParser createParser(byte[] json, int offset, int len) {
+        return createParser(json, offset, len, dataFormat);
+    }
+
+    private JsonParser createParser(byte[] json, int offset, int len, DataFormat format) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            BufferRecyclerPool pool = this.bufferRecyclerPool;
+            if (pool != null && format == DataFormat.JSON) {
+                return getRecyclingFactory().createParser(json, offset, len, pool);
+            }
+            return getFactory(format).createParser(json, offset, len);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Binary factories are bound to the same mapper, so custom serializers and
+     * stream attachments behave the same in all formats.
+     *
+     * @param format
+     * @return
+     */
+    private JsonFactory getFactory(DataFormat format) {
+        switch (format) {
+            case SMILE:
+                return smileFactory;
+            case CBOR:
+                return cborFactory;
+            default:
+                return mapper.getFactory();
+        }
+    }
+
+    private RecyclingJsonFactory getRecyclingFactory() {
+        return (RecyclingJsonFactory) mapper.getFactory();
+    }
+
+    private JsonParser createParser(ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        if (buffer.hasArray()) {
+            int position = buffer.position();
+            int remaining = buffer.remaining();
+            buffer.position(buffer.limit());
+            return createParser(buffer.array(), buffer.arrayOffset() + position, remaining);
+        }
+        return createParser(new ByteBufferBackedInputStream(buffer));
+    }
+
+    /**
+     * Decodes a single JSON value, regardless of the data format of the codec.
+     * Content other than whitespace after the value is rejected.
+     */
+    <T> T decode(byte[] json, int offset, int len, Class<T> clazz) throws ParseException {
+        JsonParser parser = createParser(json, offset, len, DataFormat.JSON);
+        long start = startTimer(Operation.PARSE);
+        try {
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            Object ret;
+            if (clazz == JsonNode.class) {
+                ret = new JacksonNode(mapper.readTree(parser));
+            } else {
+                ret = getReader(clazz).readValue(parser);
+            }
+            if (parser.nextToken() != null) {
+                throw new JsonParseException(parser, "Unexpected content after the value");
+            }
+            stopTimer(Operation.PARSE, start, parser);
+            return (T) ret;
         } catch (JsonParseException ex) {
             throw new ParseException(ex);
-        } catch (JsonMappingException ex) {
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            closeQuietly(parser);
+        }
+    }
+
+    /**
+     * Returns an iterator over the JSON values of the stream, read with a
+     * parser of this codec.
+     */
+    <T> MappingIterator<T> readValues(InputStream is, Class<T> clazz) {
+        JsonParser parser = createParser(is, DataFormat.JSON);
+        try {
+            return getReader(clazz).readValues(parser);
+        } catch (IOException ex) {
+            closeQuietly(parser);
             throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Reads the next value of the iterator, recording it as a parse operation.
+     */
+    <T> T readNext(MappingIterator<T> iterator) throws ParseException {
+        JsonParser parser = iterator.getParser();
+        long offset = parser.getCurrentLocation().getByteOffset();
+        long start = startTimer(Operation.PARSE);
+        try {
+            T ret = iterator.nextValue();
+            stopTimer(Operation.PARSE, start, parser.getCurrentLocation().getByteOffset() - offset);
+            return ret;
+        } catch (JsonParseException ex) {
+            throw new ParseException(ex);
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
     }
 
-    public Pair<Object, Integer> parse(String json, Type type, Map<String, InputStream> streams) throws ParseException {
-        if (json == null || json.trim().isEmpty()) {
+    /**
+     * Binds the value starting at the current token of the parser, recording
+     * it as a parse operation. The parser is left at the last token of the
+     * value, and is not closed.
+     */
+    <T> T readElement(JsonParser parser, Class<T> clazz) throws ParseException {
+        long offset = parser.getTokenLocation().getByteOffset();
+        long start = startTimer(Operation.PARSE);
+        try {
+            T ret = (T) getReader(clazz).readValue(parser);
+            stopTimer(Operation.PARSE, start, offset < 0 ? -1 : parser.getCurrentLocation().getByteOffset() - offset);
+            return ret;
+        } catch (JsonParseException ex) {
+            throw new ParseException(ex);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private JacksonNode readTree(JsonParser parser, Map<String, InputStream> streams) throws ParseException {
+        return readTree(parser, streams, Operation.PARSE);
+    }
+
+    private JacksonNode readTree(JsonParser parser, Map<String, InputStream> streams, Operation op) throws ParseException {
+        if (parser == null) {
             return null;
         }
+        long start = startTimer(op);
         try {
-            SerializationContext sc = new SerializationContext(streams);
-            SerializationContext.setCurrentContext(sc);
-            JavaType jt = TypeFactory.defaultInstance().constructType(type);
-            return new Pair<Object, Integer>(mapper.readValue(json, jt), sc.getDeclaredStreams());
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            com.fasterxml.jackson.databind.JsonNode node = mapper.readTree(parser);
+            stopTimer(op, start, parser);
+            return new JacksonNode(node, streams);
+        } catch (JsonProcessingException ex) {
+            throw new ParseException(ex);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            closeQuietly(parser);
+        }
+    }
+
+    private Object readValue(JsonParser parser, ObjectReader reader) throws ParseException {
+        if (parser == null) {
+            return null;
+        }
+        long start = startTimer(Operation.PARSE);
+        try {
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            Object ret = reader.readValue(parser);
+            stopTimer(Operation.PARSE, start, parser);
+            return ret;
         } catch (JsonParseException ex) {
             throw new ParseException(ex);
         } catch (JsonMappingException ex) {
-            throw new ParseException(ex);
+            throw new RuntimeException(ex);
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         } finally {
-            SerializationContext.closeCurrentContext();
+            closeQuietly(parser);
         }
     }
 
-    public <T> Pair<T, Integer> parse(String json, Class<T> clazz, Map<String, InputStream> streams) throws ParseException {
-        if (json == null || json.trim().isEmpty()) {
+    private Pair readValue(JsonParser parser, ObjectReader reader, Map<String, InputStream> streams) throws ParseException {
+        return readValue(parser, reader, streams, Operation.PARSE);
+    }
+
+    private Pair readValue(JsonParser parser, ObjectReader reader, Map<String, InputStream> streams, Operation op) throws ParseException {
+        if (parser == null) {
             return null;
         }
+        long start = startTimer(op);
         try {
+            if (parser.nextToken() == null) {
+                return null;
+            }
             SerializationContext sc = new SerializationContext(streams);
-            SerializationContext.setCurrentContext(sc);
-            return new Pair<T, Integer>(mapper.readValue(json, clazz), sc.getDeclaredStreams());
+            Pair ret = new Pair<Object, Integer>(reader.withAttribute(SerializationContext.class, sc).readValue(parser), sc.getDeclaredStreams());
+            stopTimer(op, start, parser);
+            return ret;
         } catch (JsonParseException ex) {
             throw new ParseException(ex);
         } catch (JsonMappingException ex) {
@@ -247,7 +1307,40 @@ public class JacksonCodec extends JsonCodec {
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         } finally {
-            SerializationContext.closeCurrentContext();
+            closeQuietly(parser);
+        }
+    }
+
+    /**
+     * @param op operation to be recorded, null for none
+     * @return start time, or {@link #NOT_TIMED} if metrics are disabled
+     */
+    private long startTimer(Operation op) {
+        if (op == null || !metrics.isEnabled()) {
+            return NOT_TIMED;
+        }
+        return System.nanoTime();
+    }
+
+    private void stopTimer(Operation op, long start, long size) {
+        if (start != NOT_TIMED) {
+            metrics.record(op, System.nanoTime() - start, size);
+        }
+    }
+
+    private void stopTimer(Operation op, long start, JsonParser parser) {
+        if (start != NOT_TIMED) {
+            JsonLocation location = parser.getCurrentLocation();
+            long size = location.getByteOffset() >= 0 ? location.getByteOffset() : location.getCharOffset();
+            metrics.record(op, System.nanoTime() - start, size);
+        }
+    }
+
+    private static void closeQuietly(JsonParser parser) {
+        try {
+            parser.close();
+        } catch (IOException ex) {
+            // nothing to do
         }
     }
 
@@ -259,18 +1352,7 @@ public class JacksonCodec extends JsonCodec {
         if (JsonNode.class.equals(clazz)) {
             return (T) node;
         }
-        try {
-            Map<String, InputStream> streams;
-            if (node instanceof JacksonNode) {
-                JacksonNode jn = (JacksonNode) node;
-                streams = jn.getStreams();
-            } else {
-                streams = null;
-            }
-            return parse(node.toString(), clazz, streams).getElement1();
-        } catch (ParseException ex) {
-            throw new RuntimeException(ex);
-        }
+        return (T) load(node, getReader(clazz));
     }
 
     @Override
@@ -281,15 +1363,31 @@ public class JacksonCodec extends JsonCodec {
         if (JsonNode.class.equals(type)) {
             return node;
         }
+        return load(node, getReader(type));
+    }
+
+    /**
+     * Binds the node to the specified type. Jackson trees are read through a
+     * token parser over the tree itself, other implementations are serialized
+     * and parsed.
+     *
+     * @param node
+     * @param reader
+     * @return
+     */
+    private Object load(JsonNode node, ObjectReader reader) {
         try {
-            Map<String, InputStream> streams;
+            Pair pair;
             if (node instanceof JacksonNode) {
                 JacksonNode jn = (JacksonNode) node;
-                streams = jn.getStreams();
+                pair = readValue(mapper.treeAsTokens(jn.getNode()), reader, jn.getStreams(), Operation.LOAD);
+            } else if (node instanceof IndexedJsonNode) {
+                IndexedJsonNode in = (IndexedJsonNode) node;
+                pair = readValue(createParser(in.getBytes(), in.getStart(), in.getEnd() - in.getStart(), DataFormat.JSON), reader, in.getStreams(), Operation.LOAD);
             } else {
-                streams = null;
+                pair = readValue(createParser(node.toString()), reader, null, Operation.LOAD);
             }
-            return parse(node.toString(), type, streams).getElement1();
+            return pair == null ? null : pair.getElement1();
         } catch (ParseException ex) {
             throw new RuntimeException(ex);
         }
@@ -297,18 +1395,34 @@ public class JacksonCodec extends JsonCodec {
 
     @Override
     public JsonSchema parseSchema(String json) throws ParseException {
-        return new JacksonSchema(json, mapper);
+        return new JacksonSchema(json, mapper, metrics);
     }
 
+    /**
+     * Schemas are generated by a per-call wrapper and memoized per type until
+     * a new string format is registered.
+     *
+     * @param type
+     * @return
+     */
     @Override
     public String getSchemaString(Type type) {
-        try {
-            mapper.acceptJsonFormatVisitor(mapper.constructType(type), schemaFactory);
-            com.fasterxml.jackson.module.jsonSchema.JsonSchema finalSchema = schemaFactory.finalSchema();
-            return addVersion(mapper.writeValueAsString(finalSchema));
-        } catch (JsonProcessingException ex) {
-            throw new RuntimeException(ex);
+        ConcurrentMap<Type, String> cache = this.schemaCache;
+        String ret = cache.get(type);
+        if (ret == null) {
+            long start = startTimer(Operation.SCHEMA_GENERATION);
+            try {
+                JacksonFactoryWrapper wrapper = schemaFactory.newWrapper();
+                mapper.acceptJsonFormatVisitor(mapper.constructType(type), wrapper);
+                com.fasterxml.jackson.module.jsonSchema.JsonSchema finalSchema = wrapper.finalSchema();
+                ret = addVersion(mapper.writeValueAsString(finalSchema));
+            } catch (JsonProcessingException ex) {
+                throw new RuntimeException(ex);
+            }
+            stopTimer(Operation.SCHEMA_GENERATION, start, ret.length());
+            cache.putIfAbsent(type, ret);
         }
+        return ret;
     }
 
     @Override
@@ -320,9 +1434,11 @@ public class JacksonCodec extends JsonCodec {
     public String prettyPrint(String json) throws ParseException {
         try {
             Object obj = parse(json, Object.class);
-            return mapper.writer().withDefaultPrettyPrinter().writeValueAsString(obj);
+            return writeValueAsString(mapper.writer().withDefaultPrettyPrinter(), obj);
         } catch (JsonProcessingException ex) {
             throw new ParseException(ex);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
         }
     }
 
@@ -330,12 +1446,18 @@ public class JacksonCodec extends JsonCodec {
         if (json == null || json.trim().isEmpty()) {
             return null;
         }
+        long start = startTimer(Operation.PARSE);
+        JsonParser parser = createParser(json);
         try {
-            return mapper.readTree(json);
+            com.fasterxml.jackson.databind.JsonNode ret = mapper.readTree(parser);
+            stopTimer(Operation.PARSE, start, json.length());
+            return ret;
         } catch (JsonProcessingException ex) {
             throw new ParseException(ex);
         } catch (IOException ex) {
             throw new RuntimeException(ex);
+        } finally {
+            closeQuietly(parser);
         }
     }
 
@@ -345,4 +1467,70 @@ public class JacksonCodec extends JsonCodec {
             super(pathname);
         }
     }
+
+    /**
+     * Sink wrapper counting the output written through it.
+     */
+    private interface Counter {
+
+        long getCount();
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream implements Counter {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+    }
+
+    private static final class CountingWriter extends FilterWriter implements Counter {
+
+        private long count;
+
+        CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            count += len;
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+    }
 }
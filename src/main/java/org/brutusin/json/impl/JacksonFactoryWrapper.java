@@ -53,6 +53,32 @@ public class JacksonFactoryWrapper extends SchemaFactoryWrapper {
         }
     }
 
+    /**
+     * Returns a new wrapper sharing the format map of this instance. Wrappers
+     * hold the state of a schema being generated, so a fresh one has to be
+     * used for every generation.
+     * <p>
+     * Subclasses should override this method to return instances of their own
+     * class. Otherwise the new wrapper is created with the subclass
+     * constructor taking the format map, if declared; subclasses without it
+     * get this instance back, shared by all generations (the behavior of
+     * previous versions), so their overrides are never lost.
+     *
+     * @return
+     */
+    public JacksonFactoryWrapper newWrapper() {
+        if (getClass() == JacksonFactoryWrapper.class) {
+            return new JacksonFactoryWrapper(formatMap);
+        }
+        try {
+            return getClass().getConstructor(Map.class).newInstance(formatMap);
+        } catch (NoSuchMethodException ex) {
+            return this;
+        } catch (ReflectiveOperationException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
     public JacksonFactoryWrapper() {
         this(null, null);
     }
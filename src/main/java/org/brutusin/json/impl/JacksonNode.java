@@ -64,7 +64,10 @@ public class JacksonNode implements JsonNode {
 
     @Override
     public Type getNodeType() {
-        JsonNodeType nodeType = node.getNodeType();
+        return getNodeType(node.getNodeType());
+    }
+
+    static Type getNodeType(JsonNodeType nodeType) {
         switch (nodeType) {
             case ARRAY:
                 return Type.ARRAY;
@@ -156,6 +159,9 @@ public class JacksonNode implements JsonNode {
 
     @Override
     public boolean equals(Object obj) {
+        if (obj instanceof IndexedJsonNode) {
+            return this.node.equals(((IndexedJsonNode) obj).getValue());
+        }
         if (!(obj instanceof JacksonNode)) {
             return false;
         }
@@ -170,4 +176,14 @@ public class JacksonNode implements JsonNode {
     public com.fasterxml.jackson.databind.JsonNode getNode() {
         return node;
     }
+
+    /**
+     * Returns a new cursor positioned at this node, for walking its subtree
+     * without creating a wrapper per visited node.
+     *
+     * @return
+     */
+    public JacksonNodeCursor cursor() {
+        return new JacksonNodeCursor(node, streams);
+    }
 }
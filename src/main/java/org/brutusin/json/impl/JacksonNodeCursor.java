@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Mutable, reusable position over a Jackson tree. Unlike the navigation
+ * methods of {@link JacksonNode}, moving the cursor does not allocate a
+ * wrapper per step: the path from the root is kept in an internal stack that
+ * only grows with the depth of the tree.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public final class JacksonNodeCursor {
+
+    private final Map<String, InputStream> streams;
+    private JsonNode[] stack = new JsonNode[16];
+    private int depth;
+
+    public JacksonNodeCursor(JsonNode root, Map<String, InputStream> streams) {
+        if (root == null) {
+            throw new IllegalArgumentException("root can not be null");
+        }
+        this.streams = streams;
+        this.stack[0] = root;
+    }
+
+    /**
+     * Moves the cursor back to the root node.
+     */
+    public void reset() {
+        Arrays.fill(stack, 1, depth + 1, null);
+        depth = 0;
+    }
+
+    /**
+     * Moves to the specified property of the current object node.
+     *
+     * @param property
+     * @return false (and the cursor stays at its position) if the current node
+     * has no such property
+     */
+    public boolean moveTo(String property) {
+        return push(stack[depth].get(property));
+    }
+
+    /**
+     * Moves to the specified element of the current array node.
+     *
+     * @param i
+     * @return false (and the cursor stays at its position) if the current node
+     * has no such element
+     */
+    public boolean moveTo(int i) {
+        return push(stack[depth].get(i));
+    }
+
+    /**
+     * Moves to the parent of the current node.
+     *
+     * @return false if the cursor is at the root
+     */
+    public boolean moveToParent() {
+        if (depth == 0) {
+            return false;
+        }
+        stack[depth--] = null;
+        return true;
+    }
+
+    private boolean push(JsonNode child) {
+        if (child == null) {
+            return false;
+        }
+        if (++depth == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[depth] = child;
+        return true;
+    }
+
+    /**
+     * @return depth of the current node, being 0 the root
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public org.brutusin.json.spi.JsonNode.Type getNodeType() {
+        return JacksonNode.getNodeType(stack[depth].getNodeType());
+    }
+
+    public int getSize() {
+        return stack[depth].size();
+    }
+
+    public Iterator<String> getProperties() {
+        return stack[depth].fieldNames();
+    }
+
+    public boolean asBoolean() {
+        return stack[depth].asBoolean();
+    }
+
+    public int asInt() {
+        return stack[depth].asInt();
+    }
+
+    public long asLong() {
+        return stack[depth].asLong();
+    }
+
+    public double asDouble() {
+        return stack[depth].asDouble();
+    }
+
+    public String asString() {
+        return stack[depth].asText();
+    }
+
+    public boolean isNull() {
+        return stack[depth].isNull();
+    }
+
+    public InputStream asStream() {
+        JsonNode node = stack[depth];
+        if (!node.isTextual()) {
+            throw new UnsupportedOperationException("Node is of type " + getNodeType());
+        }
+        if (streams == null) {
+            return null;
+        }
+        return streams.get(node.asText());
+    }
+
+    /**
+     * @return the underlying Jackson node at the current position
+     */
+    public JsonNode getNode() {
+        return stack[depth];
+    }
+
+    /**
+     * @return a standalone wrapper of the current node. Its parent is not set.
+     */
+    public JacksonNode toJacksonNode() {
+        return new JacksonNode(stack[depth], streams);
+    }
+}
@@ -17,21 +17,31 @@ package org.brutusin.json.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.fge.jsonschema.cfg.ValidationConfiguration;
-import com.github.fge.jsonschema.cfg.ValidationConfigurationBuilder;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
 import com.github.fge.jsonschema.core.report.ProcessingMessage;
 import com.github.fge.jsonschema.core.report.ProcessingReport;
-import com.github.fge.jsonschema.library.DraftV3Library;
-import com.github.fge.jsonschema.main.JsonSchemaFactory;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 import org.brutusin.json.ParseException;
 import org.brutusin.json.spi.JsonNode;
 import org.brutusin.json.spi.JsonSchema;
 import org.brutusin.json.ValidationException;
+import org.brutusin.json.impl.metrics.CodecMetrics;
+import org.brutusin.json.impl.metrics.NoOpCodecMetrics;
 import org.brutusin.json.spi.JsonCodec;
 import org.brutusin.json.util.LazyJsonNode;
 
@@ -41,12 +51,47 @@ import org.brutusin.json.util.LazyJsonNode;
  */
 public class JacksonSchema extends JacksonNode implements JsonSchema {
 
+    static final String BRUTUSIN_SCHEMA_URI = "http://brutusin.org/json/json-schema-spec";
+
+    private static final int BATCH_SIZE = 64;
+    private static final int MAX_BATCHES_IN_FLIGHT = 4 * Runtime.getRuntime().availableProcessors();
+
     private volatile com.github.fge.jsonschema.main.JsonSchema validator;
+    private volatile com.github.fge.jsonschema.main.JsonSchema failFastValidator;
+    private volatile StreamingValidator streamingValidator;
     private final ObjectMapper mapper;
+    private final CodecMetrics metrics;
+    private final ConcurrentMap<String, JacksonSchema> subSchemas = new ConcurrentHashMap();
 
     public JacksonSchema(String schema, ObjectMapper mapper) throws ParseException {
+        this(schema, mapper, NoOpCodecMetrics.INSTANCE);
+    }
+
+    /**
+     *
+     * @param schema
+     * @param mapper
+     * @param metrics receives validation timings and validator cache lookups
+     * of this schema and its sub-schemas
+     * @throws ParseException
+     */
+    public JacksonSchema(String schema, ObjectMapper mapper, CodecMetrics metrics) throws ParseException {
         super(load(schema, mapper));
         this.mapper = mapper;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Creates a schema view over an already parsed tree.
+     *
+     * @param schema
+     * @param mapper
+     * @param metrics
+     */
+    JacksonSchema(com.fasterxml.jackson.databind.JsonNode schema, ObjectMapper mapper, CodecMetrics metrics) {
+        super(addVersion(schema));
+        this.mapper = mapper;
+        this.metrics = metrics;
     }
 
     private static com.fasterxml.jackson.databind.JsonNode load(String schema, ObjectMapper mapper) throws ParseException {
@@ -62,10 +107,70 @@ public class JacksonSchema extends JacksonNode implements JsonSchema {
         }
     }
 
+    /**
+     * Tree counterpart of {@link JacksonCodec#addVersion(java.lang.String)}.
+     * Returns the same node when no change is needed, otherwise a shallow copy
+     * that shares the children of the original.
+     *
+     * @param schema
+     * @return
+     */
+    static com.fasterxml.jackson.databind.JsonNode addVersion(com.fasterxml.jackson.databind.JsonNode schema) {
+        if (schema == null || !schema.isObject()) {
+            return schema;
+        }
+        Iterator<String> fieldNames = schema.fieldNames();
+        String firstField = fieldNames.hasNext() ? fieldNames.next() : null;
+        if ("$schema".equals(firstField)) {
+            firstField = fieldNames.hasNext() ? fieldNames.next() : null;
+        }
+        boolean version = "type".equals(firstField);
+        if (!version && !schema.has("$schema")) {
+            return schema;
+        }
+        ObjectNode ret = JsonNodeFactory.instance.objectNode();
+        if (version) {
+            ret.put("$schema", BRUTUSIN_SCHEMA_URI);
+        }
+        Iterator<Map.Entry<String, com.fasterxml.jackson.databind.JsonNode>> fields = schema.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, com.fasterxml.jackson.databind.JsonNode> field = fields.next();
+            if (!"$schema".equals(field.getKey())) {
+                ret.set(field.getKey(), field.getValue());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Validates the node collecting all the errors.
+     *
+     * @param node
+     * @throws ValidationException a {@link JacksonValidationException}, or a
+     * {@link SchemaProcessingException} if the schema cannot be processed (for
+     * example, if it is not valid)
+     */
     @Override
     public final void validate(JsonNode node) throws ValidationException {
+        validate(node, false);
+    }
+
+    /**
+     *
+     * @param node
+     * @param failFast if true, validation stops at the first error, and the
+     * thrown exception only contains that one
+     * @throws ValidationException a {@link JacksonValidationException}, or a
+     * {@link SchemaProcessingException} if the schema cannot be processed (for
+     * example, if it is not valid)
+     */
+    public final void validate(JsonNode node, boolean failFast) throws ValidationException {
         if (node instanceof LazyJsonNode) {
-            validate(((LazyJsonNode) node).getJsonNode());
+            validate(((LazyJsonNode) node).getJsonNode(), failFast);
+            return;
+        }
+        if (node instanceof IndexedJsonNode) {
+            validate(((IndexedJsonNode) node).toJacksonNode(), failFast);
             return;
         }
         if (!(node instanceof JacksonNode)) {
@@ -77,38 +182,174 @@ public class JacksonSchema extends JacksonNode implements JsonSchema {
         }
         JacksonNode nodeImpl = (JacksonNode) node;
         ProcessingReport report = null;
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
         try {
-            report = getValidator().validate(nodeImpl.getNode());
+            report = getValidator(failFast).validate(nodeImpl.getNode());
         } catch (ProcessingException ex) {
-            ex.printStackTrace();
-            List<String> messages = new ArrayList();
-            messages.add(ex.getProcessingMessage().getMessage());
-            throw new ValidationException(messages);
+            if (failFast && isValidationMessage(ex.getProcessingMessage())) {
+                throw new JacksonValidationException(Collections.singletonList(new ValidationError(ex.getProcessingMessage())));
+            }
+            throw new SchemaProcessingException(ex);
+        } finally {
+            if (metrics.isEnabled()) {
+                metrics.record(CodecMetrics.Operation.VALIDATION, System.nanoTime() - start, -1);
+            }
         }
         if (!report.isSuccess()) {
             Iterator<ProcessingMessage> iterator = report.iterator();
-            List<String> messages = new ArrayList();
+            List<ValidationError> errors = new ArrayList();
             while (iterator.hasNext()) {
-                ProcessingMessage processingMessage = iterator.next();
-                messages.add(processingMessage.getMessage());
+                errors.add(new ValidationError(iterator.next()));
+            }
+            throw new JacksonValidationException(errors);
+        }
+    }
+
+    /**
+     * Fail-fast validators report the first error as an exception, as they do
+     * for schema syntax and reference errors. Only messages of the validation
+     * domain are errors of the instance.
+     */
+    private static boolean isValidationMessage(ProcessingMessage message) {
+        return "validation".equals(message.asJson().path("domain").asText());
+    }
+
+    /**
+     * Validates the nodes in parallel on the common fork-join pool.
+     *
+     * @param nodes
+     * @return
+     * @see #validateAll(java.lang.Iterable, java.util.concurrent.Executor)
+     */
+    public List<ValidationResult> validateAll(Iterable<? extends JsonNode> nodes) {
+        return validateAll(nodes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Validates the nodes in parallel, without throwing. Invalid nodes, and
+     * nodes whose validation fails unexpectedly, are reported in their own
+     * result. Nodes are submitted to the executor in chunks of {@value #BATCH_SIZE},
+     * with a bounded number of chunks in flight, so that arbitrarily long
+     * sequences (for example <code>stream::iterator</code>) can be validated
+     * without retaining them.
+     *
+     * @param nodes
+     * @param executor executor running the validations, for example a
+     * fork-join pool or a virtual thread per task executor
+     * @return the per-node results, in iteration order
+     */
+    public List<ValidationResult> validateAll(Iterable<? extends JsonNode> nodes, Executor executor) {
+        List<ValidationResult> ret = new ArrayList();
+        LinkedList<CompletableFuture<List<ValidationResult>>> inFlight = new LinkedList();
+        Iterator<? extends JsonNode> iterator = nodes.iterator();
+        int index = 0;
+        while (iterator.hasNext()) {
+            final int startIndex = index;
+            final List<JsonNode> chunk = new ArrayList(BATCH_SIZE);
+            while (iterator.hasNext() && chunk.size() < BATCH_SIZE) {
+                chunk.add(iterator.next());
+                index++;
             }
-            throw new ValidationException(messages);
+            inFlight.add(CompletableFuture.supplyAsync(new Supplier<List<ValidationResult>>() {
+                @Override
+                public List<ValidationResult> get() {
+                    List<ValidationResult> results = new ArrayList(chunk.size());
+                    for (int i = 0; i < chunk.size(); i++) {
+                        results.add(validateQuietly(startIndex + i, chunk.get(i)));
+                    }
+                    return results;
+                }
+            }, executor));
+            if (inFlight.size() >= MAX_BATCHES_IN_FLIGHT) {
+                ret.addAll(join(inFlight.removeFirst()));
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            ret.addAll(join(inFlight.removeFirst()));
+        }
+        return ret;
+    }
+
+    /**
+     * Validates the node on the specified executor.
+     *
+     * @param node
+     * @param executor
+     * @return a future completed with the validation result, also if an
+     * unexpected error occurs
+     */
+    public CompletableFuture<ValidationResult> validateAsync(final JsonNode node, Executor executor) {
+        return CompletableFuture.supplyAsync(new Supplier<ValidationResult>() {
+            @Override
+            public ValidationResult get() {
+                return validateQuietly(0, node);
+            }
+        }, executor);
+    }
+
+    private ValidationResult validateQuietly(int index, JsonNode node) {
+        try {
+            validate(node);
+            return new ValidationResult(index, null, null);
+        } catch (ValidationException ex) {
+            return new ValidationResult(index, ex, null);
+        } catch (RuntimeException ex) {
+            return new ValidationResult(index, null, ex);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns a validator that checks documents while parsing them, for inputs
+     * too large to be loaded as a tree.
+     *
+     * @return
+     * @throws IllegalArgumentException if the schema uses keywords not
+     * supported by streaming validation
+     */
+    public StreamingValidator getStreamingValidator() {
+        if (streamingValidator == null) {
+            streamingValidator = new StreamingValidator(this);
         }
+        return streamingValidator;
+    }
+
+    ObjectMapper getMapper() {
+        return mapper;
     }
 
     /**
-     * Lazy intialization of validator instance
+     * Lazy intialization of validator instances, taken from the process-wide
+     * {@link ValidatorCache} of each mode
      *
      * @return
      * @throws ProcessingException
      */
-    private com.github.fge.jsonschema.main.JsonSchema getValidator() throws ProcessingException {
+    private com.github.fge.jsonschema.main.JsonSchema getValidator(boolean failFast) throws ProcessingException {
+        if (failFast) {
+            if (failFastValidator == null) {
+                synchronized (this) {
+                    if (failFastValidator == null) {
+                        failFastValidator = ValidatorCache.getInstance(true).getValidator(getNode(), metrics);
+                    }
+                }
+            }
+            return failFastValidator;
+        }
         if (validator == null) {
             synchronized (this) {
                 if (validator == null) {
-                    ValidationConfigurationBuilder cfgBuilder = ValidationConfiguration.newBuilder();
-                    cfgBuilder.addLibrary("http://brutusin.org/json/json-schema-spec", DraftV3Library.get());
-                    validator = JsonSchemaFactory.newBuilder().setValidationConfiguration(cfgBuilder.freeze()).freeze().getJsonSchema(getNode());
+                    validator = ValidatorCache.getInstance(false).getValidator(getNode(), metrics);
                 }
             }
         }
@@ -126,19 +367,15 @@ public class JacksonSchema extends JacksonNode implements JsonSchema {
 
     @Override
     public JsonSchema getPropertySchema(String property) {
-        JacksonNode propNode = get("properties");
-        if (propNode == null) {
-            return null;
+        JacksonSchema ret = subSchemas.get("properties/" + property);
+        if (ret != null) {
+            return ret;
         }
-        JacksonNode node = propNode.get(property);
-        if (node == null) {
+        com.fasterxml.jackson.databind.JsonNode propNode = getNode().get("properties");
+        if (propNode == null) {
             return null;
         }
-        try {
-            return new JacksonSchema(node.getNode().toString(), this.mapper);
-        } catch (ParseException ex) {
-            throw new AssertionError();
-        }
+        return getSubSchema("properties/" + property, propNode.get(property));
     }
 
     @Override
@@ -152,15 +389,27 @@ public class JacksonSchema extends JacksonNode implements JsonSchema {
     }
 
     private JsonSchema getSubSchema(String name) {
-        JacksonNode node = get(name);
+        JacksonSchema ret = subSchemas.get(name);
+        if (ret != null) {
+            return ret;
+        }
+        return getSubSchema(name, getNode().get(name));
+    }
+
+    /**
+     * Sub-schemas are views over the subtrees of this schema, created once and
+     * memoized. Their validators come from the shared {@link ValidatorCache}.
+     *
+     * @param key
+     * @param node
+     * @return
+     */
+    private JacksonSchema getSubSchema(String key, com.fasterxml.jackson.databind.JsonNode node) {
         if (node == null) {
             return null;
         }
-        try {
-            return new JacksonSchema(node.getNode().toString(), this.mapper);
-        } catch (ParseException ex) {
-            throw new AssertionError();
-        }
+        JacksonSchema ret = new JacksonSchema(node, this.mapper, this.metrics);
+        JacksonSchema prev = subSchemas.putIfAbsent(key, ret);
+        return prev == null ? ret : prev;
     }
-
 }
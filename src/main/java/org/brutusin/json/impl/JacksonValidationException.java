@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import java.util.AbstractList;
+import java.util.List;
+import org.brutusin.json.ValidationException;
+
+/**
+ * {@link ValidationException} thrown by {@link JacksonSchema}. Exposes the
+ * structured errors; {@link #getMessages()} is a view over their message
+ * texts.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class JacksonValidationException extends ValidationException {
+
+    private final List<ValidationError> errors;
+
+    public JacksonValidationException(List<ValidationError> errors) {
+        super(new MessageList(errors));
+        this.errors = errors;
+    }
+
+    public List<ValidationError> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String getMessage() {
+        return getMessages().toString();
+    }
+
+    private static final class MessageList extends AbstractList<String> {
+
+        private final List<ValidationError> errors;
+
+        public MessageList(List<ValidationError> errors) {
+            this.errors = errors;
+        }
+
+        @Override
+        public String get(int index) {
+            return errors.get(index).getMessage();
+        }
+
+        @Override
+        public int size() {
+            return errors.size();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.brutusin.json.ParseException;
+
+/**
+ * Spliterator over the elements of a JSON array, decoded as the document is
+ * read. Instances are obtained from {@link JacksonCodec#parseArray}, already
+ * positioned inside the array.
+ * <p>
+ * Splitting reads a batch of elements (growing in size, as
+ * {@link Spliterators.AbstractSpliterator} does) into token buffers, and
+ * leaves their binding to the returned spliterator, so in parallel streams
+ * only tokenization is sequential. Only the elements of the batches in
+ * progress are held in memory.
+ * <p>
+ * Elements are bound with the readers of the codec, and recorded in its
+ * metrics as parse operations. Decoding errors are thrown as unchecked
+ * exceptions, wrapping a {@link ParseException} for malformed content, in
+ * both sequential and split traversal. The underlying parser is closed when
+ * the array is exhausted or on {@link #close()}.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ * @param <T> type of the elements
+ */
+public final class JsonArraySpliterator<T> extends Spliterators.AbstractSpliterator<T> implements Closeable {
+
+    private static final int BATCH_UNIT = 1 << 10;
+    private static final int MAX_BATCH = 1 << 25;
+
+    private final JacksonCodec codec;
+    private final JsonParser parser;
+    private final Class<T> clazz;
+    private int batch;
+    private boolean done;
+
+    JsonArraySpliterator(JacksonCodec codec, JsonParser parser, Class<T> clazz) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        this.codec = codec;
+        this.parser = parser;
+        this.clazz = clazz;
+    }
+
+    /**
+     * Moves the parser to the array addressed by the JSON pointer.
+     *
+     * @param parser parser not yet started
+     * @param pointer JSON pointer, "" or null for the root value
+     * @throws IOException
+     * @throws IllegalArgumentException if the pointer does not address an
+     * array
+     */
+    static void moveTo(JsonParser parser, String pointer) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (pointer != null && !pointer.isEmpty()) {
+            if (!pointer.startsWith("/")) {
+                throw new IllegalArgumentException("Invalid JSON pointer: " + pointer);
+            }
+            for (String segment : pointer.substring(1).split("/", -1)) {
+                String name = segment.replace("~1", "/").replace("~0", "~");
+                if (!moveToChild(parser, token, name)) {
+                    throw new IllegalArgumentException("No value found at " + pointer);
+                }
+                token = parser.getCurrentToken();
+            }
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("No array found at " + (pointer == null ? "" : pointer));
+        }
+    }
+
+    private static boolean moveToChild(JsonParser parser, JsonToken token, String name) throws IOException {
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if (fieldName.equals(name)) {
+                    return true;
+                }
+                parser.skipChildren();
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            int index;
+            try {
+                index = Integer.parseInt(name);
+            } catch (NumberFormatException ex) {
+                return false;
+            }
+            for (int i = 0; parser.nextToken() != JsonToken.END_ARRAY; i++) {
+                if (i == index) {
+                    return true;
+                }
+                parser.skipChildren();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        try {
+            if (!nextElement()) {
+                return false;
+            }
+            action.accept(codec.readElement(parser, clazz));
+            return true;
+        } catch (ParseException ex) {
+            throw new RuntimeException(ex);
+        } catch (JsonParseException ex) {
+            throw new RuntimeException(new ParseException(ex));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        try {
+            int n = Math.min(batch + BATCH_UNIT, MAX_BATCH);
+            TokenBuffer[] buffers = new TokenBuffer[n];
+            int size = 0;
+            while (size < n && nextElement()) {
+                TokenBuffer buffer = new TokenBuffer(parser);
+                buffer.copyCurrentStructure(parser);
+                buffers[size++] = buffer;
+            }
+            if (size == 0) {
+                return null;
+            }
+            batch = size;
+            return new BufferedSpliterator<T>(codec, clazz, buffers, size);
+        } catch (JsonParseException ex) {
+            throw new RuntimeException(new ParseException(ex));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Returns a stream over the remaining elements. Closing the stream closes
+     * the underlying parser.
+     *
+     * @param parallel
+     * @return
+     */
+    public Stream<T> stream(boolean parallel) {
+        return StreamSupport.stream(this, parallel).onClose(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    close();
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        done = true;
+        parser.close();
+    }
+
+    /**
+     * Moves the parser to the first token of the next element.
+     *
+     * @return false if the array has been exhausted
+     */
+    private boolean nextElement() throws IOException {
+        if (done) {
+            return false;
+        }
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY || token == null) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Batch of tokenized elements, bound when consumed.
+     */
+    private static final class BufferedSpliterator<T> implements Spliterator<T> {
+
+        private final JacksonCodec codec;
+        private final Class<T> clazz;
+        private final TokenBuffer[] buffers;
+        private int index;
+        private final int fence;
+
+        public BufferedSpliterator(JacksonCodec codec, Class<T> clazz, TokenBuffer[] buffers, int fence) {
+            this(codec, clazz, buffers, 0, fence);
+        }
+
+        private BufferedSpliterator(JacksonCodec codec, Class<T> clazz, TokenBuffer[] buffers, int index, int fence) {
+            this.codec = codec;
+            this.clazz = clazz;
+            this.buffers = buffers;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (index >= fence) {
+                return false;
+            }
+            TokenBuffer buffer = buffers[index];
+            buffers[index++] = null;
+            try {
+                JsonParser bufferParser = buffer.asParser();
+                bufferParser.nextToken();
+                action.accept(codec.readElement(bufferParser, clazz));
+            } catch (ParseException ex) {
+                throw new RuntimeException(ex);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            Spliterator<T> ret = new BufferedSpliterator<T>(codec, clazz, buffers, index, mid);
+            index = mid;
+            return ret;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+}
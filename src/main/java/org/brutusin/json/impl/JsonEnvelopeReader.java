@@ -0,0 +1,342 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.brutusin.commons.Pair;
+import org.brutusin.commons.io.MetaDataInputStream;
+import org.brutusin.json.ParseException;
+
+/**
+ * Reader of the envelopes written by {@link JacksonCodec#writeEnvelope}.
+ * Instances are obtained from {@link JacksonCodec#readEnvelope}, with the
+ * JSON document already bound and its stream fields set to the attachments
+ * of the envelope.
+ * <p>
+ * Attachments are bounded views over the source, not buffered in memory.
+ * Streams written as {@link MetaDataInputStream} are restored as such, with
+ * their name and content type and wrapping the attachment.
+ * When the source is a file channel and all attachment lengths are known,
+ * they are read with positional reads and can be consumed in any order (and
+ * concurrently). Otherwise they are consumed in order: reading an attachment
+ * skips the unread content of the previous ones, that cannot be read
+ * afterwards.
+ * <p>
+ * Closing the reader closes the source. The source is also closed if the
+ * envelope cannot be read.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ * @param <T> type of the document
+ */
+public final class JsonEnvelopeReader<T> implements Closeable {
+
+    private final Closeable source;
+    private final FileChannel channel;
+    private final DataInputStream in;
+    private final Attachment[] slices;
+    private final Map<String, InputStream> attachments;
+    private final T value;
+    private int current;
+
+    JsonEnvelopeReader(JacksonCodec codec, InputStream is, Type type) throws ParseException, IOException {
+        this(codec, is, null, type);
+    }
+
+    JsonEnvelopeReader(JacksonCodec codec, FileChannel channel, Type type) throws ParseException, IOException {
+        this(codec, channel, channel, type);
+    }
+
+    private JsonEnvelopeReader(JacksonCodec codec, Closeable source, FileChannel channel, Type type) throws ParseException, IOException {
+        this.source = source;
+        try {
+            DataInputStream dis = new DataInputStream(channel == null ? (InputStream) source : Channels.newInputStream(channel));
+            byte[] header;
+            try {
+                if (dis.readInt() != JsonEnvelopeWriter.MAGIC) {
+                    throw new ParseException("Not a JSON envelope");
+                }
+                int headerLength = dis.readInt();
+                if (headerLength < 8) {
+                    throw new ParseException("Invalid envelope header length: " + headerLength);
+                }
+                header = new byte[headerLength];
+                dis.readFully(header);
+            } catch (EOFException ex) {
+                throw new ParseException("Truncated envelope", ex);
+            }
+            DataInputStream hdr = new DataInputStream(new ByteArrayInputStream(header));
+            int jsonLength = hdr.readInt();
+            if (jsonLength < 0 || jsonLength > header.length - 8) {
+                throw new ParseException("Invalid envelope JSON length: " + jsonLength);
+            }
+            hdr.skipBytes(jsonLength);
+            int count = hdr.readInt();
+            this.slices = new Attachment[count];
+            Map<String, InputStream> map = new LinkedHashMap();
+            boolean positional = channel != null;
+            long offset = channel == null ? 0 : channel.position();
+            for (int i = 0; i < count; i++) {
+                String id = hdr.readUTF();
+                long length = hdr.readLong();
+                positional &= length >= 0;
+                slices[i] = new Attachment(this, i, offset, length);
+                offset += Math.max(length, 0);
+                if (hdr.readBoolean()) {
+                    String name = readNullableUTF(hdr);
+                    String contentType = readNullableUTF(hdr);
+                    map.put(id, new MetaDataInputStream(slices[i], name, contentType, length < 0 ? null : length));
+                } else {
+                    map.put(id, slices[i]);
+                }
+            }
+            this.channel = positional ? channel : null;
+            this.in = positional ? null : dis;
+            this.attachments = Collections.unmodifiableMap(map);
+            Pair<Object, Integer> pair = codec.parse(header, 4, jsonLength, type, map, DataFormat.JSON);
+            this.value = pair == null ? null : (T) pair.getElement1();
+        } catch (ParseException ex) {
+            closeQuietly(source);
+            throw ex;
+        } catch (IOException ex) {
+            closeQuietly(source);
+            throw ex;
+        } catch (RuntimeException ex) {
+            closeQuietly(source);
+            throw ex;
+        }
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @return attachments by id, in envelope order
+     */
+    public Map<String, InputStream> getAttachments() {
+        return attachments;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private static void closeQuietly(Closeable source) {
+        try {
+            source.close();
+        } catch (IOException ex) {
+            // ignored, the original error is thrown
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream dis) throws IOException {
+        return dis.readBoolean() ? dis.readUTF() : null;
+    }
+
+    /**
+     * Positions the sequential source at the beginning of the attachment,
+     * skipping the remaining content of the previous ones.
+     */
+    private void moveTo(int index) throws IOException {
+        if (index < current) {
+            throw new IOException("Attachment " + index + " has already been skipped");
+        }
+        while (current < index) {
+            slices[current].skipAll();
+            current++;
+        }
+    }
+
+    /**
+     * Attachment of an envelope.
+     */
+    public static final class Attachment extends InputStream {
+
+        private final JsonEnvelopeReader reader;
+        private final int index;
+        private final long offset;
+        private final long length;
+        private long position;
+        private int chunkRemaining;
+        private boolean eof;
+
+        private Attachment(JsonEnvelopeReader reader, int index, long offset, long length) {
+            this.reader = reader;
+            this.index = index;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * @return length in bytes, or -1 if not declared in the envelope
+         */
+        public long length() {
+            return length;
+        }
+
+        /**
+         * @return bytes not read yet, or -1 if the length is not known
+         */
+        long remaining() {
+            return length < 0 ? -1 : length - position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (reader.channel != null) {
+                if (position >= length) {
+                    return -1;
+                }
+                int n = reader.channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, length - position)), offset + position);
+                if (n < 0) {
+                    throw new EOFException("Truncated envelope");
+                }
+                position += n;
+                return n;
+            }
+            synchronized (reader) {
+                reader.moveTo(index);
+                return readSequential(b, off, len);
+            }
+        }
+
+        private int readSequential(byte[] b, int off, int len) throws IOException {
+            if (eof) {
+                return -1;
+            }
+            int max;
+            if (length >= 0) {
+                if (position >= length) {
+                    eof = true;
+                    return -1;
+                }
+                max = (int) Math.min(len, length - position);
+            } else {
+                if (chunkRemaining == 0) {
+                    chunkRemaining = reader.in.readInt();
+                    if (chunkRemaining <= 0) {
+                        eof = true;
+                        return -1;
+                    }
+                }
+                max = Math.min(len, chunkRemaining);
+            }
+            int n = reader.in.read(b, off, max);
+            if (n < 0) {
+                throw new EOFException("Truncated envelope");
+            }
+            position += n;
+            if (length < 0) {
+                chunkRemaining -= n;
+            }
+            return n;
+        }
+
+        private void skipAll() throws IOException {
+            if (length >= 0) {
+                long remaining = length - position;
+                while (remaining > 0) {
+                    long n = reader.in.skip(remaining);
+                    if (n <= 0) {
+                        if (reader.in.read() < 0) {
+                            throw new EOFException("Truncated envelope");
+                        }
+                        n = 1;
+                    }
+                    remaining -= n;
+                }
+                position = length;
+                eof = true;
+            } else {
+                byte[] buf = new byte[8192];
+                while (readSequential(buf, 0, buf.length) >= 0) {
+                }
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (reader.channel != null && n > 0) {
+                long ret = Math.min(n, length - position);
+                position += ret;
+                return ret;
+            }
+            return super.skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (length >= 0) {
+                return (int) Math.min(Integer.MAX_VALUE, length - position);
+            }
+            return 0;
+        }
+
+        /**
+         * Writes the remaining content of the attachment to the channel, with
+         * {@link FileChannel#transferTo} when read from a file channel.
+         *
+         * @param target
+         * @return number of bytes transferred
+         * @throws IOException
+         */
+        public long transferTo(WritableByteChannel target) throws IOException {
+            long count = 0;
+            if (reader.channel != null) {
+                while (position < length) {
+                    long n = reader.channel.transferTo(offset + position, length - position, target);
+                    if (n <= 0) {
+                        throw new EOFException("Truncated envelope");
+                    }
+                    position += n;
+                    count += n;
+                }
+                return count;
+            }
+            byte[] buf = new byte[JsonEnvelopeWriter.CHUNK_SIZE];
+            int n;
+            while ((n = read(buf, 0, buf.length)) >= 0) {
+                JsonEnvelopeWriter.writeFully(ByteBuffer.wrap(buf, 0, n), target);
+                count += n;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.brutusin.commons.io.MetaDataInputStream;
+
+/**
+ * Writer of the framed format that carries a JSON document together with the
+ * streams it references:
+ * <pre>
+ * magic        4 bytes, "BJE" + version
+ * headerLength int
+ * header       int jsonLength, json (UTF-8), int count,
+ *              count x (UTF id, long length, boolean metadata
+ *              [, nullable UTF name, nullable UTF content type])
+ * payloads     in header order; length bytes each, or when the length is
+ *              -1, chunks of (int n &gt; 0, n bytes) ended by an int 0
+ * </pre> Nullable strings are written as a boolean presence flag followed by
+ * the value. {@link MetaDataInputStream} attachments are written with their
+ * name and content type, and their wrapped stream as payload.
+ * <p>
+ * Lengths are known for file streams (whose payloads are sent with
+ * {@link FileChannel#transferTo}), byte array streams, envelope attachments
+ * and metadata streams declaring their length; other streams are chunked.
+ * Writing fails if a declared length does not match the content of the
+ * stream.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+final class JsonEnvelopeWriter {
+
+    static final int MAGIC = 0x424A4501;
+    static final int CHUNK_SIZE = 1 << 16;
+
+    private JsonEnvelopeWriter() {
+    }
+
+    /**
+     * Writes the envelope and closes the attachment streams, also on failure.
+     *
+     * @param json JSON document
+     * @param streams streams referenced by the document, can be null
+     * @param channel
+     * @throws IOException
+     */
+    static void write(byte[] json, Map<String, InputStream> streams, WritableByteChannel channel) throws IOException {
+        List<Map.Entry<String, InputStream>> entries = new ArrayList();
+        if (streams != null) {
+            entries.addAll(streams.entrySet());
+        }
+        try {
+            long[] lengths = new long[entries.size()];
+            ByteArrayOutputStream header = new ByteArrayOutputStream(json.length + 64);
+            DataOutputStream dos = new DataOutputStream(header);
+            dos.writeInt(MAGIC);
+            dos.writeInt(0);
+            dos.writeInt(json.length);
+            dos.write(json);
+            dos.writeInt(entries.size());
+            for (int i = 0; i < lengths.length; i++) {
+                Map.Entry<String, InputStream> entry = entries.get(i);
+                lengths[i] = getLength(entry.getValue());
+                dos.writeUTF(entry.getKey());
+                dos.writeLong(lengths[i]);
+                if (entry.getValue() instanceof MetaDataInputStream) {
+                    MetaDataInputStream mis = (MetaDataInputStream) entry.getValue();
+                    dos.writeBoolean(true);
+                    writeNullableUTF(mis.getName(), dos);
+                    writeNullableUTF(mis.getContentType(), dos);
+                } else {
+                    dos.writeBoolean(false);
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(header.toByteArray());
+            buffer.putInt(4, buffer.limit() - 8);
+            writeFully(buffer, channel);
+            for (int i = 0; i < lengths.length; i++) {
+                InputStream is = entries.get(i).getValue();
+                try {
+                    if (lengths[i] < 0) {
+                        writeChunked(is, channel);
+                    } else {
+                        writePayload(unwrap(is), lengths[i], channel);
+                    }
+                } finally {
+                    is.close();
+                }
+            }
+        } catch (IOException ex) {
+            closeQuietly(entries);
+            throw ex;
+        } catch (RuntimeException ex) {
+            closeQuietly(entries);
+            throw ex;
+        }
+    }
+
+    private static void closeQuietly(List<Map.Entry<String, InputStream>> entries) {
+        for (Map.Entry<String, InputStream> entry : entries) {
+            try {
+                entry.getValue().close();
+            } catch (IOException ex) {
+                // ignored, the original error is thrown
+            }
+        }
+    }
+
+    private static InputStream unwrap(InputStream is) {
+        while (is instanceof MetaDataInputStream && ((MetaDataInputStream) is).getIs() != null) {
+            is = ((MetaDataInputStream) is).getIs();
+        }
+        return is;
+    }
+
+    private static long getLength(InputStream is) throws IOException {
+        if (is instanceof MetaDataInputStream) {
+            long ret = getLength(unwrap(is));
+            Long declared = ((MetaDataInputStream) is).getLength();
+            if (declared == null) {
+                return ret;
+            }
+            if (ret >= 0 && ret != declared) {
+                throw new IOException("Attachment length (" + ret + ") does not match its declared length (" + declared + ")");
+            }
+            return declared;
+        } else if (is instanceof FileInputStream) {
+            FileChannel fc = ((FileInputStream) is).getChannel();
+            return fc.size() - fc.position();
+        } else if (is instanceof JsonEnvelopeReader.Attachment) {
+            return ((JsonEnvelopeReader.Attachment) is).remaining();
+        } else if (is instanceof ByteArrayInputStream) {
+            return is.available();
+        }
+        return -1;
+    }
+
+    private static void writePayload(InputStream is, long length, WritableByteChannel channel) throws IOException {
+        if (is instanceof FileInputStream) {
+            FileChannel fc = ((FileInputStream) is).getChannel();
+            long position = fc.position();
+            long count = 0;
+            while (count < length) {
+                long n = fc.transferTo(position + count, length - count, channel);
+                if (n <= 0) {
+                    throw new EOFException("Attachment shorter than its declared length");
+                }
+                count += n;
+            }
+            fc.position(position + length);
+        } else if (is instanceof JsonEnvelopeReader.Attachment) {
+            ((JsonEnvelopeReader.Attachment) is).transferTo(channel);
+        } else {
+            byte[] buf = new byte[(int) Math.min(CHUNK_SIZE, Math.max(length, 1))];
+            long remaining = length;
+            while (remaining > 0) {
+                int n = is.read(buf, 0, (int) Math.min(buf.length, remaining));
+                if (n < 0) {
+                    throw new EOFException("Attachment shorter than its declared length");
+                }
+                writeFully(ByteBuffer.wrap(buf, 0, n), channel);
+                remaining -= n;
+            }
+            if (is.read() >= 0) {
+                throw new IOException("Attachment longer than its declared length");
+            }
+        }
+    }
+
+    private static void writeChunked(InputStream is, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + CHUNK_SIZE);
+        byte[] buf = buffer.array();
+        int n;
+        while ((n = is.read(buf, 4, CHUNK_SIZE)) >= 0) {
+            if (n > 0) {
+                buffer.clear();
+                buffer.putInt(0, n);
+                buffer.limit(4 + n);
+                writeFully(buffer, channel);
+            }
+        }
+        buffer.clear();
+        buffer.putInt(0);
+        buffer.flip();
+        writeFully(buffer, channel);
+    }
+
+    private static void writeNullableUTF(String s, DataOutputStream dos) throws IOException {
+        dos.writeBoolean(s != null);
+        if (s != null) {
+            dos.writeUTF(s);
+        }
+    }
+
+    static void writeFully(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import org.brutusin.json.ParseException;
+
+/**
+ * Push-style, non-blocking decoder of JSON content received in chunks, as
+ * delivered by NIO channels or event-loop frameworks. Instances are obtained
+ * from {@link JacksonCodec#newFeeder} and {@link JacksonCodec#newArrayFeeder}.
+ * <p>
+ * Chunks are copied into an internal buffer and scanned incrementally (each
+ * byte once, keeping string, escape and nesting state across chunks) to find
+ * the boundaries of the values, either a sequence of whitespace-separated
+ * top-level values or the elements of a top-level array. Each value is bound
+ * as soon as its last byte is received and passed to the consumer from the
+ * calling thread, so the buffer only holds the value in progress and
+ * {@link #feed} never waits for more input.
+ * <p>
+ * Only UTF-8 JSON is supported, regardless of the data format of the codec.
+ * Instances are not thread-safe.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ * @param <T> type of the values
+ */
+public final class JsonFeeder<T> {
+
+    private static final int AFTER_START = 0;
+    private static final int AFTER_VALUE = 1;
+    private static final int AFTER_COMMA = 2;
+
+    private final JacksonCodec codec;
+    private final Class<T> clazz;
+    private final boolean array;
+    private final Consumer<? super T> consumer;
+
+    private byte[] buffer = new byte[256];
+    private int limit;
+    private int pos;
+    private long consumed;
+
+    private int depth;
+    private boolean inString;
+    private boolean escape;
+    private int valueStart = -1;
+    private boolean scalar;
+
+    private boolean opened;
+    private boolean closed;
+    private int separator = AFTER_START;
+    private boolean ended;
+
+    JsonFeeder(JacksonCodec codec, Class<T> clazz, boolean array, Consumer<? super T> consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer is required");
+        }
+        this.codec = codec;
+        this.clazz = clazz;
+        this.array = array;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Feeds the remaining bytes of the buffer, emitting the values completed
+     * by them. The buffer is fully consumed and can be reused afterwards.
+     *
+     * @param chunk
+     * @throws ParseException
+     * @throws IllegalStateException if {@link #end()} has been called
+     */
+    public void feed(ByteBuffer chunk) throws ParseException {
+        int len = chunk.remaining();
+        ensureCapacity(len);
+        chunk.get(buffer, limit, len);
+        limit += len;
+        scan();
+    }
+
+    public void feed(byte[] chunk, int offset, int len) throws ParseException {
+        ensureCapacity(len);
+        System.arraycopy(chunk, offset, buffer, limit, len);
+        limit += len;
+        scan();
+    }
+
+    /**
+     * Signals the end of the input, emitting a pending top-level scalar.
+     *
+     * @throws ParseException if the input ends in the middle of a value (or
+     * before the top-level array is closed, for array feeders)
+     */
+    public void end() throws ParseException {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        if (valueStart >= 0 && scalar) {
+            emit(limit);
+        }
+        if (valueStart >= 0 || (array && !closed)) {
+            throw error("Unexpected end of input", limit);
+        }
+    }
+
+    /**
+     * Returns the number of bytes received but not yet emitted as part of a
+     * value.
+     *
+     * @return
+     */
+    public int getBufferedBytes() {
+        return valueStart >= 0 ? limit - valueStart : 0;
+    }
+
+    private void ensureCapacity(int len) {
+        if (ended) {
+            throw new IllegalStateException("Feeder already ended");
+        }
+        if (limit + len > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(limit + len, buffer.length * 2));
+        }
+    }
+
+    private void scan() throws ParseException {
+        for (; pos < limit; pos++) {
+            byte b = buffer[pos];
+            if (inString) {
+                if (escape) {
+                    escape = false;
+                } else if (b == '\\') {
+                    escape = true;
+                } else if (b == '"') {
+                    inString = false;
+                    if (depth == 0) {
+                        emit(pos + 1);
+                    }
+                }
+                continue;
+            }
+            if (depth > 0) {
+                if (b == '"') {
+                    inString = true;
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    if (--depth == 0) {
+                        emit(pos + 1);
+                    }
+                }
+                continue;
+            }
+            if (valueStart >= 0) {
+                if (!isDelimiter(b)) {
+                    continue;
+                }
+                emit(pos);
+            }
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                continue;
+            }
+            if (array) {
+                if (!opened) {
+                    if (b != '[') {
+                        throw error("Expected a top-level array", pos);
+                    }
+                    opened = true;
+                    continue;
+                }
+                if (closed) {
+                    throw error("Unexpected content after the top-level array", pos);
+                }
+                if (b == ',') {
+                    if (separator != AFTER_VALUE) {
+                        throw error("Unexpected ','", pos);
+                    }
+                    separator = AFTER_COMMA;
+                    continue;
+                }
+                if (b == ']') {
+                    if (separator == AFTER_COMMA) {
+                        throw error("Unexpected ']'", pos);
+                    }
+                    closed = true;
+                    continue;
+                }
+                if (separator == AFTER_VALUE) {
+                    throw error("Expected ',' or ']'", pos);
+                }
+            }
+            if (b == ',' || b == ']' || b == '}' || b == ':') {
+                throw error("Unexpected '" + (char) b + "'", pos);
+            }
+            valueStart = pos;
+            if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                depth = 1;
+            } else {
+                scalar = true;
+            }
+        }
+        compact();
+    }
+
+    private void emit(int end) throws ParseException {
+        int start = valueStart;
+        valueStart = -1;
+        scalar = false;
+        separator = AFTER_VALUE;
+        consumer.accept(codec.decode(buffer, start, end - start, clazz));
+    }
+
+    /**
+     * Discards the bytes already emitted, moving the value in progress to the
+     * start of the buffer.
+     */
+    private void compact() {
+        int keep = valueStart >= 0 ? valueStart : limit;
+        if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+            consumed += keep;
+            limit -= keep;
+            pos -= keep;
+            if (valueStart >= 0) {
+                valueStart = 0;
+            }
+        }
+    }
+
+    private ParseException error(String message, int offset) {
+        return new ParseException(message + " at byte offset " + (consumed + offset));
+    }
+
+    private static boolean isDelimiter(byte b) {
+        switch (b) {
+            case ' ':
+            case '\n':
+            case '\r':
+            case '\t':
+            case ',':
+            case ']':
+            case '}':
+            case '[':
+            case '{':
+            case '"':
+            case ':':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import org.brutusin.json.ParseException;
+
+/**
+ * Structural index of a UTF-8 JSON document, built in a single scan. Values
+ * are numbered in document order; for each one, its kind, its byte range, the
+ * offset of its member name (for object members) and the number following its
+ * last descendant (so that siblings can be reached skipping whole subtrees)
+ * are recorded in parallel arrays. Nothing else is decoded.
+ * <p>
+ * The scan checks the structure of the document (brackets, separators,
+ * strings and literals); the syntax of numbers and the content of strings are
+ * checked when the values are decoded.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+final class JsonIndex {
+
+    static final byte OBJECT = 0;
+    static final byte ARRAY = 1;
+    static final byte STRING = 2;
+    static final byte NUMBER = 3;
+    static final byte BOOLEAN = 4;
+    static final byte NULL = 5;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    final ObjectMapper mapper;
+    final byte[] bytes;
+    private int count;
+    private byte[] kinds;
+    private int[] starts;
+    private int[] ends;
+    private int[] nexts;
+    private int[] keys;
+
+    private JsonIndex(ObjectMapper mapper, byte[] bytes, int capacity) {
+        this.mapper = mapper;
+        this.bytes = bytes;
+        this.kinds = new byte[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.nexts = new int[capacity];
+        this.keys = new int[capacity];
+    }
+
+    /**
+     * @param mapper used to decode values
+     * @param bytes
+     * @param offset
+     * @param len
+     * @return the index, or null if the content is blank
+     * @throws ParseException
+     */
+    static JsonIndex build(ObjectMapper mapper, byte[] bytes, int offset, int len) throws ParseException {
+        int end = offset + len;
+        int pos = skipWhitespace(bytes, offset, end);
+        if (pos == end) {
+            return null;
+        }
+        JsonIndex ret = new JsonIndex(mapper, bytes, Math.max(16, len >>> 4));
+        ret.scan(pos, end);
+        ret.trim();
+        return ret;
+    }
+
+    byte kind(int id) {
+        return kinds[id];
+    }
+
+    int start(int id) {
+        return starts[id];
+    }
+
+    int end(int id) {
+        return ends[id];
+    }
+
+    /**
+     * @param id
+     * @return the id following the subtree of the value: its next sibling, if
+     * any
+     */
+    int next(int id) {
+        return nexts[id];
+    }
+
+    /**
+     * @param id id of an object member
+     * @return the decoded member name
+     */
+    String key(int id) {
+        return decodeString(keys[id], stringEnd(bytes, keys[id], bytes.length));
+    }
+
+    boolean keyEquals(int id, String name) {
+        int start = keys[id] + 1;
+        int end = stringEnd(bytes, keys[id], bytes.length) - 1;
+        boolean plain = true;
+        for (int i = start; i < end; i++) {
+            if (bytes[i] < 0 || bytes[i] == '\\') {
+                plain = false;
+                break;
+            }
+        }
+        if (plain) {
+            if (end - start != name.length()) {
+                return false;
+            }
+            for (int i = 0; i < name.length(); i++) {
+                if (bytes[start + i] != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return key(id).equals(name);
+    }
+
+    /**
+     * Decodes the string token in the specified range, quotes included.
+     */
+    String decodeString(int start, int end) {
+        for (int i = start + 1; i < end - 1; i++) {
+            if (bytes[i] == '\\') {
+                return decode(start, end).asText();
+            }
+        }
+        return new String(bytes, start + 1, end - start - 2, UTF8);
+    }
+
+    /**
+     * Builds the Jackson tree of the value.
+     *
+     * @param id
+     * @return
+     */
+    com.fasterxml.jackson.databind.JsonNode materialize(int id) {
+        return decode(starts[id], ends[id]);
+    }
+
+    private com.fasterxml.jackson.databind.JsonNode decode(int start, int end) {
+        try {
+            JsonParser parser = mapper.getFactory().createParser(bytes, start, end - start);
+            try {
+                return mapper.readTree(parser);
+            } finally {
+                parser.close();
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void scan(int pos, int end) throws ParseException {
+        int[] stack = new int[16];
+        int depth = 0;
+        int key = -1;
+        while (true) {
+            if (pos >= end) {
+                throw error("Unexpected end of input", pos);
+            }
+            int id = add(pos, key);
+            key = -1;
+            byte b = bytes[pos];
+            if (b == '{' || b == '[') {
+                kinds[id] = b == '{' ? OBJECT : ARRAY;
+                pos = skipWhitespace(bytes, pos + 1, end);
+                if (pos < end && bytes[pos] == (b == '{' ? '}' : ']')) {
+                    ends[id] = ++pos;
+                    nexts[id] = count;
+                } else {
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                    }
+                    stack[depth++] = id;
+                    if (b == '{') {
+                        key = pos;
+                        pos = scanName(pos, end);
+                    }
+                    continue;
+                }
+            } else {
+                pos = scanScalar(id, pos, end);
+            }
+            // value completed: separators and closing brackets
+            while (true) {
+                pos = skipWhitespace(bytes, pos, end);
+                if (depth == 0) {
+                    if (pos != end) {
+                        throw error("Unexpected content after the root value", pos);
+                    }
+                    return;
+                }
+                if (pos >= end) {
+                    throw error("Unexpected end of input", pos);
+                }
+                int top = stack[depth - 1];
+                byte c = bytes[pos];
+                if (c == ',') {
+                    pos = skipWhitespace(bytes, pos + 1, end);
+                    if (kinds[top] == OBJECT) {
+                        key = pos;
+                        pos = scanName(pos, end);
+                    }
+                    break;
+                } else if (c == (kinds[top] == OBJECT ? '}' : ']')) {
+                    ends[top] = ++pos;
+                    nexts[top] = count;
+                    depth--;
+                } else {
+                    throw error("Unexpected character '" + (char) c + "'", pos);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans a member name and the following colon.
+     *
+     * @return position of the member value
+     */
+    private int scanName(int pos, int end) throws ParseException {
+        if (pos >= end || bytes[pos] != '"') {
+            throw error("Member name expected", pos);
+        }
+        int nameEnd = stringEnd(bytes, pos, end);
+        if (nameEnd < 0) {
+            throw error("Unterminated string", pos);
+        }
+        pos = skipWhitespace(bytes, nameEnd, end);
+        if (pos >= end || bytes[pos] != ':') {
+            throw error("':' expected", pos);
+        }
+        return skipWhitespace(bytes, pos + 1, end);
+    }
+
+    private int scanScalar(int id, int pos, int end) throws ParseException {
+        byte b = bytes[pos];
+        int ret;
+        if (b == '"') {
+            kinds[id] = STRING;
+            ret = stringEnd(bytes, pos, end);
+            if (ret < 0) {
+                throw error("Unterminated string", pos);
+            }
+        } else if (b == 't') {
+            kinds[id] = BOOLEAN;
+            ret = literalEnd(pos, end, "true");
+        } else if (b == 'f') {
+            kinds[id] = BOOLEAN;
+            ret = literalEnd(pos, end, "false");
+        } else if (b == 'n') {
+            kinds[id] = NULL;
+            ret = literalEnd(pos, end, "null");
+        } else if (b == '-' || (b >= '0' && b <= '9')) {
+            kinds[id] = NUMBER;
+            ret = pos + 1;
+            while (ret < end && isNumberChar(bytes[ret])) {
+                ret++;
+            }
+        } else {
+            throw error("Unexpected character '" + (char) b + "'", pos);
+        }
+        ends[id] = ret;
+        nexts[id] = id + 1;
+        return ret;
+    }
+
+    private int literalEnd(int pos, int end, String literal) throws ParseException {
+        if (end - pos < literal.length()) {
+            throw error("Unexpected end of input", pos);
+        }
+        for (int i = 1; i < literal.length(); i++) {
+            if (bytes[pos + i] != literal.charAt(i)) {
+                throw error("Invalid literal", pos);
+            }
+        }
+        return pos + literal.length();
+    }
+
+    private int add(int start, int key) {
+        if (count == starts.length) {
+            int capacity = count + (count >>> 1);
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            nexts = Arrays.copyOf(nexts, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+        starts[count] = start;
+        keys[count] = key;
+        return count++;
+    }
+
+    private void trim() {
+        if (count < starts.length) {
+            kinds = Arrays.copyOf(kinds, count);
+            starts = Arrays.copyOf(starts, count);
+            ends = Arrays.copyOf(ends, count);
+            nexts = Arrays.copyOf(nexts, count);
+            keys = Arrays.copyOf(keys, count);
+        }
+    }
+
+    private ParseException error(String message, int pos) {
+        return new ParseException(message + " at byte offset " + pos);
+    }
+
+    private static boolean isNumberChar(byte b) {
+        return (b >= '0' && b <= '9') || b == '.' || b == 'e' || b == 'E' || b == '+' || b == '-';
+    }
+
+    private static int skipWhitespace(byte[] bytes, int pos, int end) {
+        while (pos < end) {
+            byte b = bytes[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * @param pos position of the opening quote
+     * @return position following the closing quote, or -1 if the string is
+     * not terminated
+     */
+    private static int stringEnd(byte[] bytes, int pos, int end) {
+        for (int i = pos + 1; i < end; i++) {
+            byte b = bytes[i];
+            if (b == '"') {
+                return i + 1;
+            } else if (b == '\\') {
+                i++;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.MappingIterator;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.brutusin.json.ParseException;
+
+/**
+ * Reader of <a href="http://jsonlines.org/">JSON Lines</a> (newline delimited
+ * JSON) content, returning the decoded values in order. Instances are
+ * obtained from {@link JacksonCodec#readLines}.
+ * <p>
+ * In sequential mode a single parser, created by the codec, is kept along the
+ * whole input, so values may also span several lines. In parallel mode the
+ * input is split by lines that are decoded concurrently on an executor, with a
+ * bounded number of lines read ahead of the consumer. In both modes, content
+ * other than whitespace after a value in the same line is rejected as
+ * malformed.
+ * <p>
+ * Lines are always decoded as JSON, regardless of the data format of the
+ * codec.
+ * <p>
+ * Decoding errors are thrown as unchecked exceptions, wrapping a
+ * {@link ParseException} for malformed content in both modes. Instances are
+ * not thread-safe.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ * @param <T> type of the values
+ */
+public final class JsonLinesReader<T> implements Iterator<T>, Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final JacksonCodec codec;
+    private final InputStream is;
+    private final Class<T> clazz;
+
+    private final MappingIterator<T> iterator;
+    private int lastLine;
+
+    private final Executor executor;
+    private final int readAhead;
+    private final ArrayDeque<CompletableFuture<T>> pending;
+    private final byte[] buffer;
+    private int bufferPos;
+    private int bufferLimit;
+    private byte[] line = new byte[256];
+    private boolean eof;
+
+    /**
+     * Sequential reader.
+     */
+    JsonLinesReader(JacksonCodec codec, InputStream is, Class<T> clazz) {
+        this.codec = codec;
+        this.is = is;
+        this.clazz = clazz;
+        this.executor = null;
+        this.readAhead = 0;
+        this.pending = null;
+        this.buffer = null;
+        this.iterator = codec.readValues(is, clazz);
+    }
+
+    /**
+     * Parallel reader.
+     */
+    JsonLinesReader(JacksonCodec codec, InputStream is, Class<T> clazz, Executor executor, int readAhead) {
+        if (readAhead < 1) {
+            throw new IllegalArgumentException("readAhead must be positive");
+        }
+        this.codec = codec;
+        this.is = is;
+        this.clazz = clazz;
+        this.iterator = null;
+        this.executor = executor;
+        this.readAhead = readAhead;
+        this.pending = new ArrayDeque(readAhead);
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (iterator != null) {
+            try {
+                if (!iterator.hasNextValue()) {
+                    return false;
+                }
+                JsonParser parser = iterator.getParser();
+                if (parser.getTokenLocation().getLineNr() <= lastLine) {
+                    throw new JsonParseException(parser, "Unexpected content after the value in line " + lastLine);
+                }
+                return true;
+            } catch (JsonParseException ex) {
+                throw new RuntimeException(new ParseException(ex));
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        fill();
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (iterator != null) {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                T ret = codec.readNext(iterator);
+                lastLine = iterator.getParser().getCurrentLocation().getLineNr();
+                return ret;
+            } catch (ParseException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        fill();
+        if (pending.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return pending.removeFirst().join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns a sequential stream over the remaining values. Closing the stream
+     * closes this reader.
+     *
+     * @return
+     */
+    public Stream<T> stream() {
+        Stream<T> ret = StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+        return ret.onClose(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    close();
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes the input. In parallel mode, lines submitted and not yet consumed
+     * are cancelled, so that they are not decoded on the executor.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (iterator != null) {
+            iterator.close();
+        } else {
+            eof = true;
+            for (CompletableFuture<T> future : pending) {
+                future.cancel(false);
+            }
+            pending.clear();
+        }
+        is.close();
+    }
+
+    /**
+     * Submits lines for decoding until the read-ahead limit is reached or the
+     * input is exhausted.
+     */
+    private void fill() {
+        try {
+            while (pending.size() < readAhead && !eof) {
+                int len = readLine();
+                if (len > 0) {
+                    final byte[] json = Arrays.copyOf(line, len);
+                    pending.addLast(CompletableFuture.supplyAsync(new Supplier<T>() {
+                        @Override
+                        public T get() {
+                            try {
+                                return codec.decode(json, 0, json.length, clazz);
+                            } catch (ParseException ex) {
+                                throw new RuntimeException(ex);
+                            }
+                        }
+                    }, executor));
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Reads the next line into {@link #line}, skipping blank lines.
+     *
+     * @return length of the line, 0 if the end of the input has been reached
+     * @throws IOException
+     */
+    private int readLine() throws IOException {
+        int len = 0;
+        boolean blank = true;
+        while (true) {
+            if (bufferPos == bufferLimit) {
+                bufferLimit = is.read(buffer);
+                bufferPos = 0;
+                if (bufferLimit <= 0) {
+                    bufferLimit = 0;
+                    eof = true;
+                    return blank ? 0 : len;
+                }
+            }
+            byte b = buffer[bufferPos++];
+            if (b == '\n') {
+                if (!blank) {
+                    return len;
+                }
+                len = 0;
+                continue;
+            }
+            if (blank && (b == ' ' || b == '\t' || b == '\r')) {
+                continue;
+            }
+            blank = false;
+            if (len == line.length) {
+                line = Arrays.copyOf(line, len * 2);
+            }
+            line[len++] = b;
+        }
+    }
+}
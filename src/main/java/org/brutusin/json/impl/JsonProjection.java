@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Extraction of the values addressed by a set of JSON pointers in a single
+ * pass over a parser. Pointers are compiled into a trie of segments; the
+ * subtrees not leading to any pointer are skipped by the tokenizer without
+ * being built, and reading stops as soon as all pointers have been resolved.
+ * <p>
+ * The result is a sparse copy of the document, containing only the selected
+ * values and their ancestors. Array positions preceding a selected element
+ * are filled with nulls.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+final class JsonProjection {
+
+    private final ObjectMapper mapper;
+    private final Segment root;
+    private int remaining;
+
+    JsonProjection(ObjectMapper mapper, String... pointers) {
+        this.mapper = mapper;
+        this.root = new Segment();
+        for (String pointer : pointers) {
+            add(pointer);
+        }
+    }
+
+    private void add(String pointer) {
+        if (pointer == null || (!pointer.isEmpty() && !pointer.startsWith("/"))) {
+            throw new IllegalArgumentException("Invalid JSON pointer: " + pointer);
+        }
+        Segment segment = root;
+        if (!pointer.isEmpty()) {
+            for (String name : pointer.substring(1).split("/", -1)) {
+                name = name.replace("~1", "/").replace("~0", "~");
+                Segment child = segment.children.get(name);
+                if (child == null) {
+                    child = new Segment();
+                    segment.children.put(name, child);
+                }
+                segment = child;
+            }
+        }
+        if (!segment.selected) {
+            segment.selected = true;
+            remaining++;
+        }
+    }
+
+    /**
+     * @param parser parser not yet started
+     * @return the sparse document, or null if no pointer was found
+     * @throws IOException
+     */
+    com.fasterxml.jackson.databind.JsonNode read(JsonParser parser) throws IOException {
+        if (parser.nextToken() == null) {
+            return null;
+        }
+        return read(parser, root);
+    }
+
+    /**
+     * @param parser positioned at the first token of a value
+     * @param segment trie node of the value
+     * @return the selected content of the value, or null if none
+     */
+    private com.fasterxml.jackson.databind.JsonNode read(JsonParser parser, Segment segment) throws IOException {
+        if (segment.selected) {
+            remaining -= segment.count();
+            return mapper.readTree(parser);
+        }
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            ObjectNode ret = null;
+            while (remaining > 0 && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                Segment child = segment.children.get(name);
+                parser.nextToken();
+                if (child == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                com.fasterxml.jackson.databind.JsonNode value = read(parser, child);
+                if (value != null) {
+                    if (ret == null) {
+                        ret = mapper.createObjectNode();
+                    }
+                    ret.set(name, value);
+                }
+            }
+            return ret;
+        } else if (token == JsonToken.START_ARRAY) {
+            ArrayNode ret = null;
+            for (int i = 0; remaining > 0 && parser.nextToken() != JsonToken.END_ARRAY; i++) {
+                Segment child = segment.children.get(String.valueOf(i));
+                if (child == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                com.fasterxml.jackson.databind.JsonNode value = read(parser, child);
+                if (value != null) {
+                    if (ret == null) {
+                        ret = mapper.createArrayNode();
+                    }
+                    while (ret.size() < i) {
+                        ret.addNull();
+                    }
+                    ret.add(value);
+                }
+            }
+            return ret;
+        }
+        return null;
+    }
+
+    /**
+     * Trie node; its children are keyed by member name or array index.
+     */
+    private static final class Segment {
+
+        private final Map<String, Segment> children = new HashMap();
+        private boolean selected;
+
+        /**
+         * @return number of pointers at or below this segment
+         */
+        private int count() {
+            int ret = selected ? 1 : 0;
+            for (Segment child : children.values()) {
+                ret += child.count();
+            }
+            return ret;
+        }
+    }
+}
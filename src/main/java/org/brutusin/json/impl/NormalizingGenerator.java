@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Generator delegate that writes values the way they would be read back from
+ * their JSON text, so that trees built from a token buffer are equal to the
+ * ones parsed from the serialized string: binary content is written as base64
+ * strings and numbers are narrowed to the types the text parser produces
+ * (<code>int</code>, <code>long</code> or <code>BigInteger</code> for
+ * integers, <code>double</code> for the rest).
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+final class NormalizingGenerator extends JsonGeneratorDelegate {
+
+    private final boolean quoteNonNumeric;
+
+    NormalizingGenerator(JsonGenerator delegate, boolean quoteNonNumeric) {
+        super(delegate, false);
+        this.quoteNonNumeric = quoteNonNumeric;
+    }
+
+    @Override
+    public void writeBinary(Base64Variant b64variant, byte[] data, int offset, int len) throws IOException {
+        if (offset != 0 || len != data.length) {
+            data = Arrays.copyOfRange(data, offset, offset + len);
+        }
+        delegate.writeString(b64variant.encode(data));
+    }
+
+    @Override
+    public int writeBinary(Base64Variant b64variant, InputStream data, int dataLength) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(dataLength < 0 ? 256 : dataLength);
+        byte[] buf = new byte[4096];
+        int remaining = dataLength < 0 ? Integer.MAX_VALUE : dataLength;
+        int r;
+        while (remaining > 0 && (r = data.read(buf, 0, Math.min(buf.length, remaining))) > 0) {
+            baos.write(buf, 0, r);
+            remaining -= r;
+        }
+        if (dataLength >= 0 && remaining > 0) {
+            throw new IOException("Too few bytes available: missing " + remaining + " bytes (out of " + dataLength + ")");
+        }
+        delegate.writeString(b64variant.encode(baos.toByteArray()));
+        return baos.size();
+    }
+
+    @Override
+    public void writeNumber(short v) throws IOException {
+        delegate.writeNumber((int) v);
+    }
+
+    @Override
+    public void writeNumber(long v) throws IOException {
+        if ((int) v == v) {
+            delegate.writeNumber((int) v);
+        } else {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(BigInteger v) throws IOException {
+        if (v == null) {
+            delegate.writeNull();
+        } else if (v.bitLength() < 32) {
+            delegate.writeNumber(v.intValue());
+        } else if (v.bitLength() < 64) {
+            delegate.writeNumber(v.longValue());
+        } else {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(double v) throws IOException {
+        if (quoteNonNumeric && (Double.isNaN(v) || Double.isInfinite(v))) {
+            delegate.writeString(Double.toString(v));
+        } else {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(float v) throws IOException {
+        if (quoteNonNumeric && (Float.isNaN(v) || Float.isInfinite(v))) {
+            delegate.writeString(Float.toString(v));
+        } else {
+            writeNumber(Float.toString(v));
+        }
+    }
+
+    @Override
+    public void writeNumber(BigDecimal v) throws IOException {
+        if (v == null) {
+            delegate.writeNull();
+        } else {
+            writeNumber(isEnabled(Feature.WRITE_BIGDECIMAL_AS_PLAIN) ? v.toPlainString() : v.toString());
+        }
+    }
+
+    /**
+     * Writes the number represented by the text as the text parser would read
+     * it.
+     */
+    @Override
+    public void writeNumber(String encodedValue) throws IOException {
+        if (encodedValue == null) {
+            delegate.writeNull();
+            return;
+        }
+        boolean integral = true;
+        for (int i = 0; i < encodedValue.length(); i++) {
+            char c = encodedValue.charAt(i);
+            if ((c < '0' || c > '9') && !(i == 0 && c == '-')) {
+                integral = false;
+                break;
+            }
+        }
+        try {
+            if (integral) {
+                writeNumber(new BigInteger(encodedValue));
+            } else {
+                delegate.writeNumber(Double.parseDouble(encodedValue));
+            }
+        } catch (NumberFormatException ex) {
+            delegate.writeNumber(encodedValue);
+        }
+    }
+}
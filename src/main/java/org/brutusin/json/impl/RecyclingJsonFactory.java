@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.io.IOContext;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import org.brutusin.json.impl.pool.BufferRecyclerPool;
+
+/**
+ * JSON factory of the default mapper, adding parser and generator creation
+ * methods that take the buffer recycler to use, instead of the thread-local
+ * one that Jackson looks up internally.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+final class RecyclingJsonFactory extends MappingJsonFactory {
+
+    private static final int MAX_STRING_COPY = 0x8000;
+
+    public RecyclingJsonFactory() {
+        super();
+    }
+
+    private RecyclingJsonFactory(RecyclingJsonFactory src, ObjectMapper mapper) {
+        super(src, mapper);
+    }
+
+    @Override
+    public JsonFactory copy() {
+        return new RecyclingJsonFactory(this, null);
+    }
+
+    /**
+     * Returns a parser using a recycler of the pool, released when the parser
+     * is closed.
+     *
+     * @param source String, Reader, InputStream or byte[]
+     * @param offset offset of byte[] sources
+     * @param len length of byte[] sources
+     * @param pool
+     * @return
+     * @throws IOException
+     */
+    JsonParser createParser(Object source, int offset, int len, BufferRecyclerPool pool) throws IOException {
+        BufferRecycler recycler = pool.acquire();
+        try {
+            return new LeasedParser(createParser(source, offset, len, recycler), pool, recycler);
+        } catch (IOException ex) {
+            pool.release(recycler);
+            throw ex;
+        } catch (RuntimeException ex) {
+            pool.release(recycler);
+            throw ex;
+        }
+    }
+
+    private JsonParser createParser(Object source, int offset, int len, BufferRecycler recycler) throws IOException {
+        if (source instanceof String) {
+            String content = (String) source;
+            if (_inputDecorator != null || content.length() > MAX_STRING_COPY || !canUseCharArrays()) {
+                return createParser(new StringReader(content), 0, 0, recycler);
+            }
+            IOContext ctxt = new IOContext(recycler, content, true);
+            char[] buf = ctxt.allocTokenBuffer(content.length());
+            content.getChars(0, content.length(), buf, 0);
+            return _createParser(buf, 0, content.length(), ctxt, true);
+        } else if (source instanceof Reader) {
+            IOContext ctxt = new IOContext(recycler, source, false);
+            return _createParser(_decorate((Reader) source, ctxt), ctxt);
+        } else if (source instanceof InputStream) {
+            IOContext ctxt = new IOContext(recycler, source, false);
+            return _createParser(_decorate((InputStream) source, ctxt), ctxt);
+        } else if (source instanceof byte[]) {
+            IOContext ctxt = new IOContext(recycler, source, true);
+            if (_inputDecorator != null) {
+                InputStream in = _inputDecorator.decorate(ctxt, (byte[]) source, offset, len);
+                if (in != null) {
+                    return _createParser(in, ctxt);
+                }
+            }
+            return _createParser((byte[]) source, offset, len, ctxt);
+        }
+        throw new IllegalArgumentException("Unsupported source: " + source);
+    }
+
+    /**
+     * Returns an UTF-8 generator using the recycler, that must not be released
+     * before the generator is closed.
+     *
+     * @param os
+     * @param recycler
+     * @return
+     * @throws IOException
+     */
+    JsonGenerator createGenerator(OutputStream os, BufferRecycler recycler) throws IOException {
+        IOContext ctxt = new IOContext(recycler, os, false);
+        ctxt.setEncoding(JsonEncoding.UTF8);
+        return _createUTF8Generator(_decorate(os, ctxt), ctxt);
+    }
+
+    /**
+     * Returns a character generator using the recycler, that must not be
+     * released before the generator is closed.
+     *
+     * @param writer
+     * @param recycler
+     * @return
+     * @throws IOException
+     */
+    JsonGenerator createGenerator(Writer writer, BufferRecycler recycler) throws IOException {
+        IOContext ctxt = new IOContext(recycler, writer, false);
+        return _createGenerator(_decorate(writer, ctxt), ctxt);
+    }
+
+    /**
+     * Parser returning its recycler to the pool on close. Closing is
+     * idempotent, so the recycler is released once.
+     */
+    private static final class LeasedParser extends JsonParserDelegate {
+
+        private final BufferRecyclerPool pool;
+        private BufferRecycler recycler;
+
+        public LeasedParser(JsonParser parser, BufferRecyclerPool pool, BufferRecycler recycler) {
+            super(parser);
+            this.pool = pool;
+            this.recycler = recycler;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                delegate.close();
+            } finally {
+                if (recycler != null) {
+                    pool.release(recycler);
+                    recycler = null;
+                }
+            }
+        }
+    }
+}
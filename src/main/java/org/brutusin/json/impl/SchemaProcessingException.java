@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import java.util.Collections;
+
+/**
+ * Thrown by {@link JacksonSchema} when the schema itself cannot be processed
+ * (syntax or reference errors), instead of the instance being invalid. Holds
+ * the processing message as its only error, and the
+ * {@link ProcessingException} as its cause.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class SchemaProcessingException extends JacksonValidationException {
+
+    public SchemaProcessingException(ProcessingException cause) {
+        super(Collections.singletonList(new ValidationError(cause.getProcessingMessage())));
+        initCause(cause);
+    }
+}
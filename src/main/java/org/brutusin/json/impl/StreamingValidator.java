@@ -0,0 +1,658 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.github.fge.jsonschema.core.report.LogLevel;
+import com.github.fge.jsonschema.core.report.ProcessingMessage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.ValidationException;
+
+/**
+ * Validates documents against a {@link JacksonSchema} while they are being
+ * parsed, without building their tree. Memory usage depends on the nesting
+ * depth of the document and on the number of errors retained, not on its
+ * size.
+ * <p>
+ * Supports the draft v3 subset used by the generated schemas:
+ * <code>type</code>, <code>required</code>, <code>properties</code>,
+ * <code>patternProperties</code>, <code>additionalProperties</code>,
+ * <code>items</code>, <code>enum</code>, <code>minimum</code>/
+ * <code>maximum</code> (and their exclusive flags) and <code>pattern</code>.
+ * Schemas using other validation keywords (or formats checked by the tree
+ * validator) are rejected on construction, so both validators always give
+ * the same verdict; documents of those schemas must be validated with
+ * {@link JacksonSchema#validate}. Annotations and unknown keywords are
+ * ignored, as the tree validator does.
+ * <p>
+ * Instances are immutable and thread-safe.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public final class StreamingValidator {
+
+    public static final int DEFAULT_MAX_ERRORS = 100;
+
+    private static final int NULL = 1;
+    private static final int BOOLEAN = 1 << 1;
+    private static final int INTEGER = 1 << 2;
+    private static final int NUMBER = 1 << 3;
+    private static final int STRING = 1 << 4;
+    private static final int OBJECT = 1 << 5;
+    private static final int ARRAY = 1 << 6;
+    private static final int ANY = NULL | BOOLEAN | INTEGER | NUMBER | STRING | OBJECT | ARRAY;
+
+    private static final Set<String> UNSUPPORTED_KEYWORDS = new HashSet(Arrays.asList(
+            "$ref", "extends", "disallow", "dependencies", "additionalItems",
+            "minItems", "maxItems", "uniqueItems", "minLength", "maxLength",
+            "divisibleBy", "multipleOf", "minProperties", "maxProperties",
+            "allOf", "anyOf", "oneOf", "not"));
+    private static final Set<String> CHECKED_FORMATS = new HashSet(Arrays.asList(
+            "date-time", "date", "time", "utc-millisec", "regex", "color",
+            "style", "phone", "uri", "email", "ip-address", "ipv4", "ipv6",
+            "host-name", "hostname"));
+
+    private final ObjectMapper mapper;
+    private final Rule root;
+
+    /**
+     * @param schema
+     * @throws IllegalArgumentException if the schema uses keywords not
+     * supported by streaming validation
+     */
+    public StreamingValidator(JacksonSchema schema) {
+        this.mapper = schema.getMapper();
+        this.root = compile(schema.getNode());
+    }
+
+    /**
+     * Validates the document read from the stream, retaining at most
+     * {@value #DEFAULT_MAX_ERRORS} errors. The stream is closed.
+     *
+     * @param is
+     * @throws ParseException if the document is not well-formed
+     * @throws ValidationException a {@link JacksonValidationException}
+     */
+    public void validate(InputStream is) throws ParseException, ValidationException {
+        validate(is, DEFAULT_MAX_ERRORS);
+    }
+
+    /**
+     * Validates the document read from the stream. The stream is closed.
+     *
+     * @param is
+     * @param maxErrors number of errors after which validation stops (1 for
+     * fail-fast validation). Remaining input is not read
+     * @throws ParseException if the document is not well-formed
+     * @throws ValidationException a {@link JacksonValidationException}
+     */
+    public void validate(InputStream is, int maxErrors) throws ParseException, ValidationException {
+        try {
+            validate(mapper.getFactory().createParser(is), maxErrors);
+        } catch (JsonParseException ex) {
+            throw new ParseException(ex);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public void validate(Reader reader, int maxErrors) throws ParseException, ValidationException {
+        try {
+            validate(mapper.getFactory().createParser(reader), maxErrors);
+        } catch (JsonParseException ex) {
+            throw new ParseException(ex);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void validate(JsonParser parser, int maxErrors) throws IOException, ValidationException {
+        if (maxErrors < 1) {
+            throw new IllegalArgumentException("maxErrors must be positive");
+        }
+        Context ctx = new Context(maxErrors);
+        try {
+            if (parser.nextToken() != null) {
+                validate(parser, root, ctx);
+            }
+        } catch (StopException ex) {
+            // maxErrors reached
+        } finally {
+            parser.close();
+        }
+        if (!ctx.errors.isEmpty()) {
+            throw new JacksonValidationException(ctx.errors);
+        }
+    }
+
+    /**
+     * Validates the value starting at the current token, leaving the parser
+     * at its last token.
+     */
+    private void validate(JsonParser parser, Rule rule, Context ctx) throws IOException {
+        if (rule == null) {
+            parser.skipChildren();
+            return;
+        }
+        if (rule.enumValues != null) {
+            validateEnum(parser, rule, ctx);
+        } else {
+            validateValue(parser, rule, ctx);
+        }
+    }
+
+    /**
+     * Checks the keywords of the rule other than <code>enum</code>.
+     */
+    private void validateValue(JsonParser parser, Rule rule, Context ctx) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        switch (token) {
+            case START_OBJECT:
+                if (checkType(OBJECT, "object", rule, ctx)) {
+                    validateObject(parser, rule, ctx);
+                } else {
+                    parser.skipChildren();
+                }
+                break;
+            case START_ARRAY:
+                if (checkType(ARRAY, "array", rule, ctx)) {
+                    validateArray(parser, rule, ctx);
+                } else {
+                    parser.skipChildren();
+                }
+                break;
+            case VALUE_STRING:
+                if (checkType(STRING, "string", rule, ctx) && rule.pattern != null) {
+                    String value = parser.getText();
+                    if (!rule.pattern.matcher(value).find()) {
+                        ctx.report("pattern", "ECMA 262 regex \"" + rule.pattern.pattern() + "\" does not match input string \"" + value + "\"");
+                    }
+                }
+                break;
+            case VALUE_NUMBER_INT:
+                if (checkType(INTEGER | NUMBER, "integer", rule, ctx)) {
+                    checkRange(parser, rule, ctx);
+                }
+                break;
+            case VALUE_NUMBER_FLOAT:
+                if (checkType(NUMBER, "number", rule, ctx)) {
+                    checkRange(parser, rule, ctx);
+                }
+                break;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                checkType(BOOLEAN, "boolean", rule, ctx);
+                break;
+            case VALUE_NULL:
+                checkType(NULL, "null", rule, ctx);
+                break;
+            default:
+                parser.skipChildren();
+        }
+    }
+
+    private void validateObject(JsonParser parser, Rule rule, Context ctx) throws IOException {
+        boolean[] found = rule.required == null ? null : new boolean[rule.required.size()];
+        List<String> notAllowed = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            Rule child = rule.properties == null ? null : rule.properties.get(name);
+            if (found != null) {
+                Integer index = rule.required.get(name);
+                if (index != null) {
+                    found[index] = true;
+                }
+            }
+            List<Rule> matching = null;
+            if (rule.patterns != null) {
+                for (int i = 0; i < rule.patterns.length; i++) {
+                    if (rule.patterns[i].matcher(name).find()) {
+                        if (matching == null) {
+                            matching = new ArrayList();
+                            if (child != null) {
+                                matching.add(child);
+                            }
+                        }
+                        matching.add(rule.patternRules[i]);
+                    }
+                }
+            }
+            if (child == null && matching == null) {
+                if (rule.additionalProperties != null) {
+                    child = rule.additionalProperties;
+                } else if (!rule.additionalAllowed) {
+                    if (notAllowed == null) {
+                        notAllowed = new ArrayList();
+                    }
+                    notAllowed.add(name);
+                }
+            }
+            parser.nextToken();
+            ctx.push(name);
+            if (matching == null) {
+                validate(parser, child, ctx);
+            } else if (matching.size() == 1) {
+                validate(parser, matching.get(0), ctx);
+            } else {
+                validate(parser, matching, ctx);
+            }
+            ctx.pop();
+        }
+        if (notAllowed != null) {
+            ctx.report("additionalProperties", "object instance has properties which are not allowed by the schema: " + toJson(notAllowed));
+        }
+        if (found != null) {
+            List<String> missing = null;
+            for (Map.Entry<String, Integer> entry : rule.required.entrySet()) {
+                if (!found[entry.getValue()]) {
+                    if (missing == null) {
+                        missing = new ArrayList();
+                    }
+                    missing.add(entry.getKey());
+                }
+            }
+            if (missing != null) {
+                ctx.report("required", "object has missing required properties (" + toJson(missing) + ")");
+            }
+        }
+    }
+
+    /**
+     * Validates a value against several schemas (a member matched by more
+     * than one of <code>properties</code> and <code>patternProperties</code>),
+     * replaying it from a token buffer.
+     */
+    private void validate(JsonParser parser, List<Rule> rules, Context ctx) throws IOException {
+        TokenBuffer buffer = new TokenBuffer(parser);
+        buffer.copyCurrentStructure(parser);
+        for (Rule r : rules) {
+            JsonParser replay = buffer.asParser();
+            replay.nextToken();
+            validate(replay, r, ctx);
+        }
+    }
+
+    private void validateArray(JsonParser parser, Rule rule, Context ctx) throws IOException {
+        int index = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            Rule child;
+            if (rule.tupleItems != null) {
+                child = index < rule.tupleItems.length ? rule.tupleItems[index] : null;
+            } else {
+                child = rule.items;
+            }
+            ctx.push(index);
+            validate(parser, child, ctx);
+            ctx.pop();
+            index++;
+        }
+    }
+
+    /**
+     * Enumerations are compared on the value tree, so the (usually scalar)
+     * value is read as a whole, and then replayed for the other keywords.
+     */
+    private void validateEnum(JsonParser parser, Rule rule, Context ctx) throws IOException {
+        JsonNode value = mapper.readTree(parser);
+        if (value == null) {
+            value = JsonNodeFactory.instance.nullNode();
+        }
+        boolean found = false;
+        for (JsonNode enumValue : rule.enumValues) {
+            if (valueEquals(enumValue, value)) {
+                found = true;
+                break;
+            }
+        }
+        if (!found) {
+            ctx.report("enum", "instance value (" + value + ") not found in enum (possible values: " + rule.enumValues + ")");
+        }
+        JsonParser replay = value.traverse();
+        replay.nextToken();
+        validateValue(replay, rule, ctx);
+    }
+
+    /**
+     * Equality used by the tree validator: numbers are compared by their
+     * value (<code>1</code> equals <code>1.0</code>), at any depth.
+     */
+    private static boolean valueEquals(JsonNode a, JsonNode b) {
+        if (a.isNumber() && b.isNumber()) {
+            return a.decimalValue().compareTo(b.decimalValue()) == 0;
+        }
+        if (a.getNodeType() != b.getNodeType() || a.size() != b.size()) {
+            return false;
+        }
+        if (a.isArray()) {
+            for (int i = 0; i < a.size(); i++) {
+                if (!valueEquals(a.get(i), b.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (a.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = a.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode other = b.get(field.getKey());
+                if (other == null || !valueEquals(field.getValue(), other)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return a.equals(b);
+    }
+
+    private static boolean checkType(int type, String name, Rule rule, Context ctx) {
+        if ((rule.types & type) != 0) {
+            return true;
+        }
+        ctx.report("type", "instance type (" + name + ") does not match any allowed primitive type (allowed: " + toJson(rule.typeNames) + ")");
+        return false;
+    }
+
+    private static void checkRange(JsonParser parser, Rule rule, Context ctx) throws IOException {
+        if (rule.minimum == null && rule.maximum == null) {
+            return;
+        }
+        BigDecimal value = parser.getDecimalValue();
+        if (rule.minimum != null) {
+            int cmp = value.compareTo(rule.minimum);
+            if (cmp < 0 || cmp == 0 && rule.exclusiveMinimum) {
+                ctx.report("minimum", "numeric instance is " + (cmp < 0 ? "lower than" : "not strictly greater than") + " the required minimum (minimum: " + rule.minimum + ", found: " + value + ")");
+            }
+        }
+        if (rule.maximum != null) {
+            int cmp = value.compareTo(rule.maximum);
+            if (cmp > 0 || cmp == 0 && rule.exclusiveMaximum) {
+                ctx.report("maximum", "numeric instance is " + (cmp > 0 ? "greater than" : "not strictly lower than") + " the required maximum (maximum: " + rule.maximum + ", found: " + value + ")");
+            }
+        }
+    }
+
+    private static String toJson(List<String> values) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(JsonNodeFactory.instance.textNode(values.get(i)));
+        }
+        return sb.append("]").toString();
+    }
+
+    private static Rule compile(JsonNode schema) {
+        if (schema == null || !schema.isObject()) {
+            return null;
+        }
+        checkSupported(schema);
+        Rule rule = new Rule();
+        JsonNode type = schema.get("type");
+        rule.typeNames = new ArrayList();
+        if (type == null) {
+            rule.types = ANY;
+        } else if (type.isArray()) {
+            for (JsonNode t : type) {
+                if (!t.isTextual()) {
+                    throw new IllegalArgumentException("Type unions with schemas are not supported by streaming validation");
+                }
+                rule.types |= getType(t.asText());
+                rule.typeNames.add(t.asText());
+            }
+        } else {
+            rule.types = getType(type.asText());
+            rule.typeNames.add(type.asText());
+        }
+        JsonNode properties = schema.get("properties");
+        if (properties != null && properties.isObject()) {
+            rule.properties = new HashMap();
+            Iterator<Map.Entry<String, JsonNode>> fields = properties.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                Rule child = compile(field.getValue());
+                if (child == null) {
+                    child = new Rule();
+                    child.types = ANY;
+                }
+                rule.properties.put(field.getKey(), child);
+                if (field.getValue().path("required").asBoolean()) {
+                    addRequired(rule, field.getKey());
+                }
+            }
+        }
+        JsonNode required = schema.get("required");
+        if (required != null && required.isArray()) {
+            for (JsonNode r : required) {
+                addRequired(rule, r.asText());
+            }
+        }
+        JsonNode patternProperties = schema.get("patternProperties");
+        if (patternProperties != null && patternProperties.isObject() && patternProperties.size() > 0) {
+            rule.patterns = new Pattern[patternProperties.size()];
+            rule.patternRules = new Rule[patternProperties.size()];
+            Iterator<Map.Entry<String, JsonNode>> fields = patternProperties.fields();
+            for (int i = 0; fields.hasNext(); i++) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                rule.patterns[i] = Pattern.compile(field.getKey());
+                rule.patternRules[i] = compile(field.getValue());
+                if (rule.patternRules[i] == null) {
+                    rule.patternRules[i] = new Rule();
+                    rule.patternRules[i].types = ANY;
+                }
+            }
+        }
+        JsonNode additionalProperties = schema.get("additionalProperties");
+        if (additionalProperties != null) {
+            if (additionalProperties.isBoolean()) {
+                rule.additionalAllowed = additionalProperties.asBoolean();
+            } else {
+                rule.additionalProperties = compile(additionalProperties);
+            }
+        }
+        JsonNode items = schema.get("items");
+        if (items != null) {
+            if (items.isArray()) {
+                rule.tupleItems = new Rule[items.size()];
+                for (int i = 0; i < items.size(); i++) {
+                    rule.tupleItems[i] = compile(items.get(i));
+                }
+            } else {
+                rule.items = compile(items);
+            }
+        }
+        JsonNode enumValues = schema.get("enum");
+        if (enumValues != null && enumValues.isArray()) {
+            rule.enumValues = new ArrayList();
+            for (JsonNode e : enumValues) {
+                rule.enumValues.add(e);
+            }
+        }
+        if (schema.path("minimum").isNumber()) {
+            rule.minimum = schema.get("minimum").decimalValue();
+            rule.exclusiveMinimum = schema.path("exclusiveMinimum").asBoolean();
+        }
+        if (schema.path("maximum").isNumber()) {
+            rule.maximum = schema.get("maximum").decimalValue();
+            rule.exclusiveMaximum = schema.path("exclusiveMaximum").asBoolean();
+        }
+        if (schema.path("pattern").isTextual()) {
+            rule.pattern = Pattern.compile(schema.get("pattern").asText());
+        }
+        return rule;
+    }
+
+    private static void checkSupported(JsonNode schema) {
+        Iterator<String> names = schema.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            if (UNSUPPORTED_KEYWORDS.contains(name)) {
+                if ("additionalItems".equals(name) && schema.get(name).asBoolean(false)) {
+                    continue;
+                }
+                throw new IllegalArgumentException("Keyword \"" + name + "\" is not supported by streaming validation");
+            }
+        }
+        JsonNode format = schema.get("format");
+        if (format != null && CHECKED_FORMATS.contains(format.asText())) {
+            throw new IllegalArgumentException("Format \"" + format.asText() + "\" is not supported by streaming validation");
+        }
+    }
+
+    private static void addRequired(Rule rule, String name) {
+        if (rule.required == null) {
+            rule.required = new HashMap();
+        }
+        if (!rule.required.containsKey(name)) {
+            rule.required.put(name, rule.required.size());
+        }
+    }
+
+    private static int getType(String name) {
+        if ("null".equals(name)) {
+            return NULL;
+        } else if ("boolean".equals(name)) {
+            return BOOLEAN;
+        } else if ("integer".equals(name)) {
+            return INTEGER;
+        } else if ("number".equals(name)) {
+            return INTEGER | NUMBER;
+        } else if ("string".equals(name)) {
+            return STRING;
+        } else if ("object".equals(name)) {
+            return OBJECT;
+        } else if ("array".equals(name)) {
+            return ARRAY;
+        } else if ("any".equals(name)) {
+            return ANY;
+        }
+        return 0;
+    }
+
+    /**
+     * Compiled form of a schema node.
+     */
+    private static final class Rule {
+
+        private int types;
+        private List<String> typeNames;
+        private Map<String, Rule> properties;
+        private Map<String, Integer> required;
+        private boolean additionalAllowed = true;
+        private Rule additionalProperties;
+        private Pattern[] patterns;
+        private Rule[] patternRules;
+        private Rule items;
+        private Rule[] tupleItems;
+        private List<JsonNode> enumValues;
+        private BigDecimal minimum;
+        private boolean exclusiveMinimum;
+        private BigDecimal maximum;
+        private boolean exclusiveMaximum;
+        private Pattern pattern;
+    }
+
+    /**
+     * State of a single validation: current path and errors found.
+     */
+    private static final class Context {
+
+        private final int maxErrors;
+        private final List<ValidationError> errors = new ArrayList();
+        private Object[] path = new Object[16];
+        private int depth;
+
+        public Context(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        private void push(Object segment) {
+            if (depth == path.length) {
+                Object[] newPath = new Object[depth * 2];
+                System.arraycopy(path, 0, newPath, 0, depth);
+                path = newPath;
+            }
+            path[depth++] = segment;
+        }
+
+        private void pop() {
+            path[--depth] = null;
+        }
+
+        private String getPointer() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                sb.append('/');
+                String segment = path[i].toString();
+                for (int j = 0; j < segment.length(); j++) {
+                    char c = segment.charAt(j);
+                    if (c == '~') {
+                        sb.append("~0");
+                    } else if (c == '/') {
+                        sb.append("~1");
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+            return sb.toString();
+        }
+
+        private void report(String keyword, String message) {
+            ObjectNode instance = JsonNodeFactory.instance.objectNode();
+            instance.put("pointer", getPointer());
+            ProcessingMessage pm = new ProcessingMessage().
+                    setLogLevel(LogLevel.ERROR).
+                    setMessage(message).
+                    put("instance", instance).
+                    put("keyword", keyword);
+            errors.add(new ValidationError(pm));
+            if (errors.size() >= maxErrors) {
+                throw StopException.INSTANCE;
+            }
+        }
+    }
+
+    private static final class StopException extends RuntimeException {
+
+        private static final StopException INSTANCE = new StopException();
+
+        private StopException() {
+            super(null, null, false, false);
+        }
+    }
+}
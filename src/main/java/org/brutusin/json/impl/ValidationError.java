@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jsonschema.core.report.ProcessingMessage;
+
+/**
+ * Single schema violation. Wraps the validator message, that already holds its
+ * formatted text; the pointer and keyword are looked up when read.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public final class ValidationError {
+
+    private final ProcessingMessage message;
+
+    ValidationError(ProcessingMessage message) {
+        this.message = message;
+    }
+
+    /**
+     *
+     * @return JSON pointer of the offending instance ("" for the root), or
+     * null if the error is not bound to an instance
+     */
+    public String getPointer() {
+        JsonNode pointer = message.asJson().path("instance").get("pointer");
+        return pointer == null ? null : pointer.asText();
+    }
+
+    /**
+     *
+     * @return the schema keyword that failed, or null if not available
+     */
+    public String getKeyword() {
+        JsonNode keyword = message.asJson().get("keyword");
+        return keyword == null ? null : keyword.asText();
+    }
+
+    public String getMessage() {
+        return message.getMessage();
+    }
+
+    @Override
+    public String toString() {
+        return message.toString();
+    }
+}
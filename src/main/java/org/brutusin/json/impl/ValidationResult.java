@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import java.util.Collections;
+import java.util.List;
+import org.brutusin.json.ValidationException;
+
+/**
+ * Outcome of the validation of a single node, as returned by the non-throwing
+ * validation methods of {@link JacksonSchema}.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public final class ValidationResult {
+
+    private final int index;
+    private final ValidationException exception;
+    private final RuntimeException failure;
+
+    ValidationResult(int index, ValidationException exception, RuntimeException failure) {
+        this.index = index;
+        this.exception = exception;
+        this.failure = failure;
+    }
+
+    /**
+     *
+     * @return position of the node in the validated sequence (0 for single
+     * validations)
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean isValid() {
+        return exception == null && failure == null;
+    }
+
+    /**
+     *
+     * @return the validation error messages, empty if the node is valid, or
+     * the failure message if the validation could not be performed
+     */
+    public List<String> getMessages() {
+        if (failure != null) {
+            return Collections.singletonList(String.valueOf(failure));
+        }
+        if (exception == null) {
+            return Collections.EMPTY_LIST;
+        }
+        return exception.getMessages();
+    }
+
+    /**
+     *
+     * @return the exception that {@link JacksonSchema#validate} would have
+     * thrown, or null if the node is valid
+     */
+    public ValidationException getException() {
+        return exception;
+    }
+
+    /**
+     *
+     * @return the unexpected error that prevented the validation of the node,
+     * or null if it was validated
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return index + (isValid() ? ": valid" : ": " + getMessages());
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jsonschema.cfg.ValidationConfiguration;
+import com.github.fge.jsonschema.cfg.ValidationConfigurationBuilder;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ListReportProvider;
+import com.github.fge.jsonschema.core.report.LogLevel;
+import com.github.fge.jsonschema.core.report.ReportProvider;
+import com.github.fge.jsonschema.library.DraftV3Library;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.brutusin.json.impl.metrics.CodecMetrics;
+
+/**
+ * Bounded cache of compiled validators, shared by all the
+ * {@link JacksonSchema} instances of the process. Validators are keyed by
+ * schema content (Jackson trees have structural equality), so schemas parsed
+ * from equivalent strings share the same compiled validator. Full-report and
+ * fail-fast validators are held in separate instances, see
+ * {@link #getInstance(boolean)}.
+ * <p>
+ * Default bounds can be overridden by the system properties
+ * {@value #MAX_SIZE_PROPERTY} (number of entries) and
+ * {@value #EXPIRE_AFTER_ACCESS_PROPERTY} (idle seconds).
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public final class ValidatorCache {
+
+    public static final String MAX_SIZE_PROPERTY = "org.brutusin.json.validatorCache.maxSize";
+    public static final String EXPIRE_AFTER_ACCESS_PROPERTY = "org.brutusin.json.validatorCache.expireAfterAccess";
+
+    private static final long DEFAULT_MAX_SIZE = 1000;
+    private static final long DEFAULT_EXPIRE_AFTER_ACCESS = 3600;
+
+    private static final JsonSchemaFactory FACTORY = createFactory(new ListReportProvider(LogLevel.INFO, LogLevel.FATAL));
+    private static final JsonSchemaFactory FAIL_FAST_FACTORY = createFactory(new ListReportProvider(LogLevel.INFO, LogLevel.ERROR));
+
+    private static final ValidatorCache INSTANCE = new ValidatorCache(
+            Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE),
+            Long.getLong(EXPIRE_AFTER_ACCESS_PROPERTY, DEFAULT_EXPIRE_AFTER_ACCESS));
+    private static final ValidatorCache FAIL_FAST_INSTANCE = new ValidatorCache(
+            Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE),
+            Long.getLong(EXPIRE_AFTER_ACCESS_PROPERTY, DEFAULT_EXPIRE_AFTER_ACCESS),
+            true);
+
+    private final JsonSchemaFactory factory;
+    private final LoadingCache<JsonNode, JsonSchema> cache;
+
+    /**
+     *
+     * @param maximumSize maximum number of validators retained
+     * @param expireAfterAccess seconds a validator is retained since its last
+     * use
+     */
+    public ValidatorCache(long maximumSize, long expireAfterAccess) {
+        this(maximumSize, expireAfterAccess, false);
+    }
+
+    /**
+     *
+     * @param maximumSize maximum number of validators retained
+     * @param expireAfterAccess seconds a validator is retained since its last
+     * use
+     * @param failFast if true, validators throw a
+     * <code>ProcessingException</code> on the first error instead of
+     * collecting a full report
+     */
+    public ValidatorCache(long maximumSize, long expireAfterAccess, boolean failFast) {
+        this.factory = failFast ? FAIL_FAST_FACTORY : FACTORY;
+        this.cache = CacheBuilder.newBuilder().
+                maximumSize(maximumSize).
+                expireAfterAccess(expireAfterAccess, TimeUnit.SECONDS).
+                recordStats().
+                build(new CacheLoader<JsonNode, JsonSchema>() {
+                    @Override
+                    public JsonSchema load(JsonNode schema) throws ProcessingException {
+                        return factory.getJsonSchema(schema);
+                    }
+                });
+    }
+
+    private static JsonSchemaFactory createFactory(ReportProvider reportProvider) {
+        ValidationConfigurationBuilder cfgBuilder = ValidationConfiguration.newBuilder();
+        cfgBuilder.addLibrary(JacksonSchema.BRUTUSIN_SCHEMA_URI, DraftV3Library.get());
+        return JsonSchemaFactory.newBuilder().
+                setValidationConfiguration(cfgBuilder.freeze()).
+                setReportProvider(reportProvider).
+                freeze();
+    }
+
+    /**
+     *
+     * @param failFast
+     * @return the process-wide cache of the specified validation mode
+     */
+    public static ValidatorCache getInstance(boolean failFast) {
+        return failFast ? FAIL_FAST_INSTANCE : INSTANCE;
+    }
+
+    public static ValidatorCache getInstance() {
+        return INSTANCE;
+    }
+
+    public JsonSchema getValidator(JsonNode schema) throws ProcessingException {
+        return getValidator(schema, null);
+    }
+
+    /**
+     * Returns the validator of the schema, notifying the lookup outcome to the
+     * specified metrics.
+     *
+     * @param schema
+     * @param metrics can be null
+     * @return
+     * @throws ProcessingException
+     */
+    public JsonSchema getValidator(final JsonNode schema, CodecMetrics metrics) throws ProcessingException {
+        if (metrics == null || !metrics.isEnabled()) {
+            return lookup(schema, null);
+        }
+        final boolean[] loaded = new boolean[1];
+        JsonSchema ret = lookup(schema, new Callable<JsonSchema>() {
+            @Override
+            public JsonSchema call() throws ProcessingException {
+                loaded[0] = true;
+                return factory.getJsonSchema(schema);
+            }
+        });
+        if (loaded[0]) {
+            metrics.recordValidatorCacheMiss();
+        } else {
+            metrics.recordValidatorCacheHit();
+        }
+        return ret;
+    }
+
+    private JsonSchema lookup(JsonNode schema, Callable<JsonSchema> loader) throws ProcessingException {
+        try {
+            return loader == null ? cache.get(schema) : cache.get(schema, loader);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof ProcessingException) {
+                throw (ProcessingException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        } catch (UncheckedExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.metrics;
+
+/**
+ * Hook for recording the cost of codec operations. Implementations must be
+ * thread-safe and cheap, they are invoked from the codec hot paths.
+ * <p>
+ * Callers check {@link #isEnabled()} before taking any timing, so a disabled
+ * implementation costs a single virtual call per operation.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public interface CodecMetrics {
+
+    public enum Operation {
+
+        PARSE,
+        TRANSFORM,
+        LOAD,
+        TO_JSON_NODE,
+        SCHEMA_GENERATION,
+        VALIDATION
+    }
+
+    public boolean isEnabled();
+
+    /**
+     *
+     * @param operation
+     * @param nanos elapsed time
+     * @param size size in bytes (or chars for character sources) of the JSON
+     * document, or -1 if not known
+     */
+    public void record(Operation operation, long nanos, long size);
+
+    public void recordValidatorCacheHit();
+
+    public void recordValidatorCacheMiss();
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory implementation, suitable to be scraped periodically. Latencies are
+ * kept in a histogram of power-of-two nanosecond buckets, so percentiles are
+ * upper bounds with a 2x resolution.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class InMemoryCodecMetrics implements CodecMetrics {
+
+    private static final int BUCKETS = 64;
+
+    private final OperationMetrics[] operations;
+    private final LongAdder validatorCacheHits = new LongAdder();
+    private final LongAdder validatorCacheMisses = new LongAdder();
+
+    public InMemoryCodecMetrics() {
+        Operation[] values = Operation.values();
+        this.operations = new OperationMetrics[values.length];
+        for (int i = 0; i < values.length; i++) {
+            this.operations[i] = new OperationMetrics();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void record(Operation operation, long nanos, long size) {
+        OperationMetrics om = operations[operation.ordinal()];
+        om.count.increment();
+        om.nanos.add(nanos);
+        if (size > 0) {
+            om.bytes.add(size);
+        }
+        om.histogram.incrementAndGet(getBucket(nanos));
+    }
+
+    @Override
+    public void recordValidatorCacheHit() {
+        validatorCacheHits.increment();
+    }
+
+    @Override
+    public void recordValidatorCacheMiss() {
+        validatorCacheMisses.increment();
+    }
+
+    private static int getBucket(long nanos) {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return BUCKETS - Long.numberOfLeadingZeros(nanos) - 1;
+    }
+
+    public long getCount(Operation operation) {
+        return operations[operation.ordinal()].count.sum();
+    }
+
+    public long getTotalNanos(Operation operation) {
+        return operations[operation.ordinal()].nanos.sum();
+    }
+
+    /**
+     *
+     * @param operation
+     * @return accumulated size of the documents whose size was known
+     */
+    public long getTotalBytes(Operation operation) {
+        return operations[operation.ordinal()].bytes.sum();
+    }
+
+    /**
+     * Returns the histogram of latencies. Element <code>i</code> counts the
+     * operations that took between <code>2^i</code> and
+     * <code>2^(i+1)-1</code> nanoseconds.
+     *
+     * @param operation
+     * @return
+     */
+    public long[] getLatencyHistogram(Operation operation) {
+        AtomicLongArray histogram = operations[operation.ordinal()].histogram;
+        long[] ret = new long[BUCKETS];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = histogram.get(i);
+        }
+        return ret;
+    }
+
+    /**
+     *
+     * @param operation
+     * @param percentile in the range (0, 100]
+     * @return upper bound in nanoseconds of the latency percentile, or 0 if
+     * nothing has been recorded
+     */
+    public long getLatencyPercentile(Operation operation, double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile " + percentile);
+        }
+        long[] histogram = getLatencyHistogram(operation);
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * percentile / 100);
+        long accumulated = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            accumulated += histogram[i];
+            if (accumulated >= threshold) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public long getValidatorCacheHits() {
+        return validatorCacheHits.sum();
+    }
+
+    public long getValidatorCacheMisses() {
+        return validatorCacheMisses.sum();
+    }
+
+    public void reset() {
+        for (OperationMetrics om : operations) {
+            om.count.reset();
+            om.nanos.reset();
+            om.bytes.reset();
+            for (int i = 0; i < BUCKETS; i++) {
+                om.histogram.set(i, 0);
+            }
+        }
+        validatorCacheHits.reset();
+        validatorCacheMisses.reset();
+    }
+
+    /**
+     * Plain text dump, one <code>name value</code> pair per line.
+     *
+     * @return
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            String prefix = operation.name().toLowerCase();
+            sb.append(prefix).append(".count ").append(getCount(operation)).append('\n');
+            sb.append(prefix).append(".nanos ").append(getTotalNanos(operation)).append('\n');
+            sb.append(prefix).append(".bytes ").append(getTotalBytes(operation)).append('\n');
+            sb.append(prefix).append(".p50 ").append(getLatencyPercentile(operation, 50)).append('\n');
+            sb.append(prefix).append(".p99 ").append(getLatencyPercentile(operation, 99)).append('\n');
+        }
+        sb.append("validatorCache.hits ").append(getValidatorCacheHits()).append('\n');
+        sb.append("validatorCache.misses ").append(getValidatorCacheMisses()).append('\n');
+        return sb.toString();
+    }
+
+    private static class OperationMetrics {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.pool;
+
+import com.fasterxml.jackson.core.util.BufferRecycler;
+
+/**
+ * Source of the Jackson buffer recyclers used by the codec. A recycler is
+ * acquired at the beginning of each operation, owned by it exclusively, and
+ * released once its parser or generator has been closed.
+ * <p>
+ * Implementations must be thread-safe. They are not required to keep released
+ * instances, nor to return them.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public interface BufferRecyclerPool {
+
+    public BufferRecycler acquire();
+
+    public void release(BufferRecycler recycler);
+}
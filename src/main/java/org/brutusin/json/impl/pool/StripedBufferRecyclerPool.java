@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.pool;
+
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free pool shared by all threads. Recyclers are kept in an
+ * array of slots; each thread starts probing at a slot derived from its id,
+ * so concurrent callers rarely compete for the same slot. When no slot is
+ * available in the probed range a new recycler is created (on acquisition) or
+ * the recycler is dropped (on release), so the pool never blocks nor grows
+ * beyond its capacity.
+ * <p>
+ * Unlike the thread-local recyclers of Jackson, buffers are reused across
+ * short-lived threads, and retained memory depends on the pool capacity
+ * instead of on the number of threads.
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public final class StripedBufferRecyclerPool implements BufferRecyclerPool {
+
+    private static final int MAX_PROBES = 4;
+
+    private final AtomicReferenceArray<BufferRecycler> slots;
+    private final int mask;
+    private final int probes;
+
+    /**
+     * Creates a pool with four slots per available processor.
+     */
+    public StripedBufferRecyclerPool() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param capacity maximum number of recyclers kept, rounded up to the
+     * next power of two
+     */
+    public StripedBufferRecyclerPool(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<BufferRecycler>(size);
+        this.mask = size - 1;
+        this.probes = Math.min(size, MAX_PROBES);
+    }
+
+    @Override
+    public BufferRecycler acquire() {
+        int start = stripe();
+        for (int i = 0; i < probes; i++) {
+            int index = (start + i) & mask;
+            BufferRecycler ret = slots.get(index);
+            if (ret != null && slots.compareAndSet(index, ret, null)) {
+                return ret;
+            }
+        }
+        return new BufferRecycler();
+    }
+
+    @Override
+    public void release(BufferRecycler recycler) {
+        if (recycler == null) {
+            return;
+        }
+        int start = stripe();
+        for (int i = 0; i < probes; i++) {
+            int index = (start + i) & mask;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, recycler)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Number of recyclers currently held.
+     *
+     * @return
+     */
+    public int size() {
+        int ret = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
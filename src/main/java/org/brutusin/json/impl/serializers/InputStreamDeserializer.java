@@ -37,7 +37,7 @@ public class InputStreamDeserializer<T extends InputStream> extends StdDeseriali
 
     @Override
     public T deserialize(JsonParser jp, com.fasterxml.jackson.databind.DeserializationContext dc) throws IOException, JsonProcessingException {
-        SerializationContext ctx = SerializationContext.getCurrentContext();
+        SerializationContext ctx = SerializationContext.getCurrentContext(dc);
         if (ctx == null) {
             return null;
         }
@@ -16,7 +16,6 @@
 package org.brutusin.json.impl.serializers;
 
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.json.JsonWriteContext;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import java.io.IOException;
@@ -35,28 +34,10 @@ public class InputStreamSerializer
 
     @Override
     public void serialize(InputStream value, JsonGenerator gen, SerializerProvider provider) throws IOException {
-        JsonWriteContext ctx = (JsonWriteContext) gen.getOutputContext();
-        int status = ctx.writeValue();
-        switch (status) {
-            case JsonWriteContext.STATUS_OK_AFTER_COMMA:
-                gen.writeRaw(',');
-                break;
-            case JsonWriteContext.STATUS_OK_AFTER_COLON:
-                gen.writeRaw(':');
-                break;
-            case JsonWriteContext.STATUS_OK_AFTER_SPACE:
-                gen.writeRaw(' ');
-                break;
-        };
         if (value == null) {
-            gen.writeRaw("null");
+            gen.writeNull();
         } else {
-            SerializationContext sCtx = SerializationContext.getCurrentContext();
-            if (sCtx == null) {
-                sCtx = new SerializationContext();
-                SerializationContext.setCurrentContext(sCtx);
-            }
-            gen.writeRaw("\"" + sCtx.addStream(value) + "\"");
+            gen.writeString(SerializationContext.getCurrentContext(provider).addStream(value));
         }
     }
 }
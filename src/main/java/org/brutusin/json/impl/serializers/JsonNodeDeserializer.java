@@ -15,15 +15,12 @@
  */
 package org.brutusin.json.impl.serializers;
 
-import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.TreeNode;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import java.io.IOException;
-import org.brutusin.json.ParseException;
-import org.brutusin.json.spi.JsonCodec;
+import org.brutusin.json.impl.JacksonNode;
 import org.brutusin.json.spi.JsonNode;
 
 /**
@@ -38,11 +35,11 @@ public class JsonNodeDeserializer extends StdDeserializer<JsonNode> {
 
     @Override
     public JsonNode deserialize(JsonParser jp, DeserializationContext dc) throws IOException, JsonProcessingException {
-        try {
-            TreeNode tree = jp.getCodec().readTree(jp);
-            return JsonCodec.getInstance().parse(tree.toString(), SerializationContext.getCurrentContext() != null ? SerializationContext.getCurrentContext().getMap() : null);
-        } catch (ParseException ex) {
-            throw new JsonParseException(ex.getMessage(), null);
+        com.fasterxml.jackson.databind.JsonNode tree = jp.getCodec().readTree(jp);
+        if (tree == null) {
+            return null;
         }
+        SerializationContext ctx = SerializationContext.getCurrentContext(dc);
+        return new JacksonNode(tree, ctx != null ? ctx.getMap() : null);
     }
 }
@@ -16,10 +16,13 @@
 package org.brutusin.json.impl.serializers;
 
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.json.JsonWriteContext;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import java.io.IOException;
+import org.brutusin.json.impl.JacksonNode;
 import org.brutusin.json.spi.JsonNode;
 
 /**
@@ -34,24 +37,17 @@ public class JsonNodeSerializer extends StdSerializer<JsonNode> {
     
     @Override
     public void serialize(JsonNode value, JsonGenerator gen, SerializerProvider provider) throws IOException {
-        JsonWriteContext ctx = (JsonWriteContext) gen.getOutputContext();
-
-        int status = ctx.writeValue();
-        switch (status) {
-            case JsonWriteContext.STATUS_OK_AFTER_COMMA:
-                gen.writeRaw(',');
-                break;
-            case JsonWriteContext.STATUS_OK_AFTER_COLON:
-                gen.writeRaw(':');
-                break;
-            case JsonWriteContext.STATUS_OK_AFTER_SPACE:
-                gen.writeRaw(' ');
-                break;
-        };
         if (value == null) {
-            gen.writeRaw("null");
+            gen.writeNull();
+        } else if (value instanceof JacksonNode) {
+            ((JacksonNode) value).getNode().serialize(gen, provider);
+        } else if (gen instanceof JsonGeneratorImpl) {
+            gen.writeRawValue(value.toString());
         } else {
-            gen.writeRaw(value.toString());
+            // Token buffers and binary generators do not accept raw content
+            ObjectCodec codec = gen.getCodec();
+            TreeNode tree = codec.readTree(codec.getFactory().createParser(value.toString()));
+            codec.writeTree(gen, tree);
         }
     }
 }
@@ -15,23 +15,23 @@
  */
 package org.brutusin.json.impl.serializers;
 
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Streams referenced by a document being serialized or deserialized. The
+ * context travels with each Jackson call as the per-call attribute keyed by
+ * this class (see <code>ObjectWriter.withAttribute()</code> and
+ * <code>ObjectReader.withAttribute()</code>), so it is not bound to the thread
+ * that started the call.
  *
  * @author Ignacio del Valle Alles idelvall@brutusin.org
  */
 public class SerializationContext {
 
-    private static final ThreadLocal<SerializationContext> instances = new ThreadLocal<SerializationContext>() {
-        @Override
-        protected SerializationContext initialValue() {
-            return null;
-        }
-    };
-
     private final Map<InputStream, String> inverseMap;
     private final Map<String, InputStream> map;
     private int addCounter;
@@ -55,16 +55,30 @@ public class SerializationContext {
         }
     }
 
-    public static void setCurrentContext(SerializationContext ctx) {
-        instances.set(ctx);
-    }
-
-    public static SerializationContext getCurrentContext() {
-        return instances.get();
+    /**
+     * Returns the context of the serialization in progress. If the caller did
+     * not set one (the mapper is being used directly) a new one is bound to
+     * the call.
+     *
+     * @param provider
+     * @return
+     */
+    public static SerializationContext getCurrentContext(SerializerProvider provider) {
+        SerializationContext ret = (SerializationContext) provider.getAttribute(SerializationContext.class);
+        if (ret == null) {
+            ret = new SerializationContext();
+            provider.setAttribute(SerializationContext.class, ret);
+        }
+        return ret;
     }
 
-    public static void closeCurrentContext() {
-        instances.remove();
+    /**
+     * @param ctx
+     * @return the context of the deserialization in progress, or null if the
+     * caller did not set one
+     */
+    public static SerializationContext getCurrentContext(DeserializationContext ctx) {
+        return (SerializationContext) ctx.getAttribute(SerializationContext.class);
     }
 
     public String addStream(InputStream stream) {
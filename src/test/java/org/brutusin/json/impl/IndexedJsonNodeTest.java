@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import java.util.Iterator;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.spi.JsonCodec;
+import org.brutusin.json.spi.JsonNode;
+import org.brutusin.json.spi.TestClass;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class IndexedJsonNodeTest {
+
+    private static final String JSON = "{ \"a\" : [1, -2.5e3, true, false, null, \"x\\\"y\", {}, []],\n"
+            + "\"b\\u00e9\": {\"c\": {\"d\": \"ünicode\"}, \"e\": \"12\"}, \"ñ\": 7 }";
+
+    private static void assertSameTree(JsonNode expected, JsonNode actual) {
+        assertEquals(expected.getNodeType(), actual.getNodeType());
+        assertEquals(expected.getSize(), actual.getSize());
+        switch (expected.getNodeType()) {
+            case OBJECT:
+                Iterator<String> properties = expected.getProperties();
+                while (properties.hasNext()) {
+                    String property = properties.next();
+                    assertSameTree(expected.get(property), actual.get(property));
+                    assertSame(actual, actual.get(property).getParentNode());
+                }
+                break;
+            case ARRAY:
+                for (int i = 0; i < expected.getSize(); i++) {
+                    assertSameTree(expected.get(i), actual.get(i));
+                }
+                assertNull(actual.get(expected.getSize()));
+                break;
+            default:
+                assertEquals(expected.asString(), actual.asString());
+                assertEquals(expected.asInteger(), actual.asInteger());
+                assertEquals(expected.asDouble(), actual.asDouble());
+                assertEquals(expected.asBoolean(), actual.asBoolean());
+        }
+    }
+
+    @Test
+    public void testNavigation() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        IndexedJsonNode node = codec.parseLazy(JSON);
+        assertSameTree(codec.parse(JSON), node);
+        assertEquals("ünicode", node.get("bé").get("c").get("d").asString());
+        assertEquals("x\"y", node.get("a").get(5).asString());
+        assertEquals("{\"d\": \"ünicode\"}", node.get("bé").get("c").toString());
+        assertNull(node.get("missing"));
+        assertNull(node.get(0));
+        assertEquals(codec.parse(JSON), node.toJacksonNode());
+        node = codec.parseLazy("{\"f\": 1, \"f\": 2}");
+        assertEquals(Integer.valueOf(2), node.get("f").asInteger());
+        assertEquals(2, node.getSize());
+    }
+
+    @Test
+    public void testEquals() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        JsonNode tree = codec.parse(JSON);
+        IndexedJsonNode node = codec.parseLazy(JSON);
+        assertEquals(tree, node);
+        assertEquals(node, tree);
+        assertEquals(tree.hashCode(), node.hashCode());
+        assertEquals(codec.parseLazy(JSON), node);
+        assertEquals(tree.get("a").get(1), node.get("a").get(1));
+        assertEquals(node.get("a").get(1), tree.get("a").get(1));
+        assertFalse(node.equals(tree.get("a")));
+        assertFalse(node.get("a").equals(codec.parseLazy("[1]")));
+        assertFalse(node.equals(null));
+    }
+
+    @Test
+    public void testScalarAccessorsOnContainers() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        JsonNode tree = codec.parse(JSON);
+        IndexedJsonNode node = codec.parseLazy(JSON);
+        JsonNode[][] pairs = {{tree, node}, {tree.get("a"), node.get("a")}};
+        for (JsonNode[] pair : pairs) {
+            assertEquals(pair[0].asString(), pair[1].asString());
+            assertEquals(pair[0].asInteger(), pair[1].asInteger());
+            assertEquals(pair[0].asLong(), pair[1].asLong());
+            assertEquals(pair[0].asDouble(), pair[1].asDouble());
+            assertEquals(pair[0].asBoolean(), pair[1].asBoolean());
+        }
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        IndexedJsonNode node = codec.parseLazy("[{\"string\":\"2\",\"aint\":3}]");
+        TestClass tc = codec.load(node.get(0), TestClass.class);
+        assertEquals("2", tc.getString());
+        assertEquals(Integer.valueOf(3), tc.getAint());
+        codec.getSchema(TestClass.class).validate(node.get(0));
+    }
+
+    @Test
+    public void testBlankAndMalformed() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        assertNull(codec.parseLazy(" \n"));
+        assertEquals(JsonNode.Type.NUMBER, codec.parseLazy(" 12 ").getNodeType());
+        String[] malformed = {"{", "[1,]", "{\"a\" 1}", "{\"a\":1,}", "[1] 2", "\"abc", "tru", "{1:2}", "[1}"};
+        for (String json : malformed) {
+            try {
+                codec.parseLazy(json);
+                fail(json);
+            } catch (ParseException ex) {
+                // expected
+            }
+        }
+    }
+}
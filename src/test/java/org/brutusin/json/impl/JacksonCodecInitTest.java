@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class JacksonCodecInitTest {
+
+    /**
+     * The codec must be constructible before the service provider has been
+     * loaded: initializing JacksonCodec initializes JsonCodec first, whose
+     * service loader instantiates the codec before the static state of
+     * JacksonCodec is set. A fresh class loader is used so that neither class
+     * has been initialized by other tests.
+     */
+    @Test
+    public void testConstructionBeforeProviderInit() throws Exception {
+        List<URL> urls = new ArrayList();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(new File(entry).toURI().toURL());
+        }
+        URLClassLoader loader = new URLClassLoader(urls.toArray(new URL[urls.size()]), ClassLoader.getSystemClassLoader().getParent());
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(loader);
+        try {
+            Class<?> clazz = Class.forName(JacksonCodec.class.getName(), true, loader);
+            assertNotSame(JacksonCodec.class, clazz);
+            Object codec = clazz.getDeclaredConstructor().newInstance();
+            String schema = (String) clazz.getMethod("getSchemaString", java.lang.reflect.Type.class).invoke(codec, File.class);
+            assertTrue(schema.contains("\"format\":\"file\""));
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextLoader);
+            loader.close();
+        }
+    }
+}
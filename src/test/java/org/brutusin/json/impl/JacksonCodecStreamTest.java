@@ -0,0 +1,378 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import org.brutusin.commons.Pair;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.impl.pool.StripedBufferRecyclerPool;
+import org.brutusin.json.spi.JsonNode;
+import org.brutusin.json.spi.TestClass;
+import org.brutusin.json.util.LazyJsonNode;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class JacksonCodecStreamTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final JacksonCodec codec = new JacksonCodec();
+
+    @Test
+    public void testParseSources() throws Exception {
+        String json = "{\"string\":\"a\",\"aint\":3}";
+        byte[] bytes = json.getBytes(UTF8);
+        assertEquals("a", codec.parse(new ByteArrayInputStream(bytes), TestClass.class).getString());
+        assertEquals("a", codec.parse(new StringReader(json), TestClass.class).getString());
+        assertEquals(Integer.valueOf(3), codec.parse(bytes, TestClass.class).getAint());
+        assertEquals(codec.parse(json), codec.parse(ByteBuffer.wrap(bytes)));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals(codec.parse(json), codec.parse(direct));
+        assertFalse(direct.hasRemaining());
+
+        byte[] padded = ("xx" + json + "yy").getBytes(UTF8);
+        assertEquals(codec.parse(json), codec.parse(padded, 2, bytes.length));
+    }
+
+    @Test
+    public void testParsePath() throws Exception {
+        byte[] bytes = "{\"string\":\"a\",\"aint\":12345}".getBytes(UTF8);
+        File file = File.createTempFile("codec", ".json");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(bytes);
+        } finally {
+            fos.close();
+        }
+        assertEquals("a", codec.parse(file.toPath(), TestClass.class).getString());
+        assertEquals(Integer.valueOf(12345), codec.parse(file.toPath()).get("aint").asInteger());
+        MappedInputStream is = new MappedInputStream(file.toPath(), 5);
+        try {
+            byte[] read = new byte[bytes.length];
+            int n = 0;
+            while (n < 10) {
+                n += is.read(read, n, 10 - n);
+            }
+            assertEquals(3, is.skip(3));
+            n += 3;
+            while (n < bytes.length) {
+                read[n++] = (byte) is.read();
+            }
+            assertEquals(-1, is.read());
+            assertTrue(Arrays.equals(Arrays.copyOfRange(bytes, 0, 10), Arrays.copyOfRange(read, 0, 10)));
+            assertTrue(Arrays.equals(Arrays.copyOfRange(bytes, 13, bytes.length), Arrays.copyOfRange(read, 13, bytes.length)));
+        } finally {
+            is.close();
+        }
+    }
+
+    @Test
+    public void testEmptyInput() throws Exception {
+        assertNull(codec.parse(new ByteArrayInputStream(new byte[0])));
+        assertNull(codec.parse(new StringReader("  \n"), TestClass.class));
+        assertNull(codec.parse(ByteBuffer.allocate(0), TestClass.class));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testMalformedInput() throws Exception {
+        codec.parse(new StringReader("{\"string\":"));
+    }
+
+    @Test
+    public void testStreamAttachments() throws Exception {
+        InputStream is = new ByteArrayInputStream(new byte[]{1, 2, 3});
+        Map<String, InputStream> streams = new HashMap();
+        streams.put("#1#1", is);
+        byte[] json = "{\"inputStream\":\"#1#1\"}".getBytes(UTF8);
+        Pair<TestClass, Integer> pair = codec.parse(new ByteArrayInputStream(json), TestClass.class, streams);
+        assertSame(is, pair.getElement1().getInputStream());
+        assertEquals(Integer.valueOf(1), pair.getElement2());
+        JsonNode node = codec.parse(ByteBuffer.wrap(json), streams);
+        assertSame(is, node.get("inputStream").asStream());
+    }
+
+    @Test
+    public void testStreamAttachmentsAcrossThreads() throws Exception {
+        final TestClass tc = new TestClass();
+        tc.setInputStream(new ByteArrayInputStream(new byte[]{1}));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final Map<String, InputStream> streams = CompletableFuture.supplyAsync(new Supplier<Map<String, InputStream>>() {
+                @Override
+                public Map<String, InputStream> get() {
+                    return codec.transform(tc, baos);
+                }
+            }, executor).get();
+            assertEquals(1, streams.size());
+            Pair<TestClass, Integer> pair = CompletableFuture.supplyAsync(new Supplier<Pair<TestClass, Integer>>() {
+                @Override
+                public Pair<TestClass, Integer> get() {
+                    try {
+                        return codec.parse(new ByteArrayInputStream(baos.toByteArray()), TestClass.class, streams);
+                    } catch (ParseException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            }, executor).get();
+            assertSame(tc.getInputStream(), pair.getElement1().getInputStream());
+            assertEquals(Integer.valueOf(1), pair.getElement2());
+            assertNull(codec.transform(new TestClass(), new ByteArrayOutputStream()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTransformSinks() throws Exception {
+        TestClass tc = new TestClass();
+        tc.setString("a");
+        String expected = codec.transform(tc);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        assertNull(codec.transform(tc, baos));
+        assertEquals(expected, new String(baos.toByteArray(), UTF8));
+
+        StringWriter sw = new StringWriter();
+        codec.transform(tc, sw);
+        assertEquals(expected, sw.toString());
+
+        baos.reset();
+        codec.transform(tc, Channels.newChannel(baos));
+        assertEquals(expected, new String(baos.toByteArray(), UTF8));
+
+        InputStream is = new ByteArrayInputStream(new byte[]{1, 2, 3});
+        tc.setInputStream(is);
+        baos.reset();
+        Map<String, InputStream> streams = codec.transform(tc, baos);
+        assertEquals(1, streams.size());
+        assertSame(is, codec.parse(new String(baos.toByteArray(), UTF8), streams).get("inputStream").asStream());
+    }
+
+    @Test
+    public void testLoadFromTree() throws Exception {
+        InputStream is = new ByteArrayInputStream(new byte[]{1, 2, 3});
+        Map<String, InputStream> streams = new HashMap();
+        streams.put("#1#1", is);
+        JsonNode node = codec.parse("{\"string\":\"a\",\"bolArr\":[true,false],\"inputStream\":\"#1#1\"}", streams);
+        TestClass tc = codec.load(node, TestClass.class);
+        assertEquals("a", tc.getString());
+        assertTrue(Arrays.equals(new boolean[]{true, false}, tc.getBolArr()));
+        assertSame(is, tc.getInputStream());
+        assertSame(node, codec.load(node, JsonNode.class));
+        assertEquals(node.get("bolArr"), codec.load(node.get("bolArr"), JsonNode.class));
+    }
+
+    @Test
+    public void testToJsonNode() throws Exception {
+        TestClass tc = new TestClass();
+        tc.setString("a");
+        tc.setBolArr(new boolean[]{true});
+        assertEquals(codec.parse(codec.transform(tc)), codec.toJsonNode(tc));
+
+        Map<String, JsonNode> map = new HashMap();
+        map.put("jackson", codec.parse("{\"a\":[1,2]}"));
+        map.put("lazy", new LazyJsonNode("{\"b\":true}"));
+        assertEquals(codec.parse("{\"jackson\":{\"a\":[1,2]},\"lazy\":{\"b\":true}}"), codec.toJsonNode(map));
+
+        ScalarBean bean = new ScalarBean();
+        JsonNode node = codec.toJsonNode(bean);
+        assertEquals(codec.parse(codec.transform(bean)), node);
+        assertEquals(codec.parse(codec.transform(bean)).toString(), node.toString());
+        assertEquals(JsonNode.Type.STRING, node.get("b").getNodeType());
+        assertEquals("AQI=", node.get("b").asString());
+        assertEquals(Double.valueOf(1.1), node.get("f").asDouble());
+    }
+
+    public static class ScalarBean {
+
+        long l = 5;
+        long bigL = Long.MAX_VALUE;
+        short s = 3;
+        byte[] b = {1, 2};
+        float f = 1.1f;
+        float nan = Float.NaN;
+        BigDecimal d = new BigDecimal("10");
+        BigDecimal e = new BigDecimal("2.50");
+        BigInteger i = BigInteger.valueOf(7);
+        BigInteger bigI = BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.TEN);
+    }
+
+    @Test
+    public void testBinaryFormats() throws Exception {
+        for (DataFormat format : new DataFormat[]{DataFormat.SMILE, DataFormat.CBOR}) {
+            TestClass tc = new TestClass();
+            tc.setString("a");
+            tc.setAint(3);
+            InputStream is = new ByteArrayInputStream(new byte[]{1, 2, 3});
+            tc.setInputStream(is);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            Map<String, InputStream> streams = codec.transform(tc, baos, format);
+            byte[] bytes = baos.toByteArray();
+            assertFalse(codec.transform(tc).equals(new String(bytes, UTF8)));
+
+            Pair<TestClass, Integer> pair = codec.parse(new ByteArrayInputStream(bytes), TestClass.class, streams, format);
+            assertEquals("a", pair.getElement1().getString());
+            assertEquals(Integer.valueOf(3), pair.getElement1().getAint());
+            assertSame(is, pair.getElement1().getInputStream());
+            assertEquals(codec.parse(codec.transform(tc)), codec.parse(bytes, format));
+
+            Map<String, JsonNode> map = new HashMap();
+            map.put("jackson", codec.parse("{\"a\":[1,2]}"));
+            map.put("lazy", new LazyJsonNode("{\"b\":true}"));
+            baos.reset();
+            codec.transform(map, baos, format);
+            assertEquals(codec.parse("{\"jackson\":{\"a\":[1,2]},\"lazy\":{\"b\":true}}"), codec.parse(baos.toByteArray(), format));
+        }
+        JacksonCodec smileCodec = new JacksonCodec();
+        smileCodec.setDataFormat(DataFormat.SMILE);
+        TestClass tc = new TestClass();
+        tc.setString("b");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        smileCodec.transform(tc, baos);
+        assertEquals("b", codec.parse(baos.toByteArray(), TestClass.class, DataFormat.SMILE).getString());
+        assertEquals("b", smileCodec.parse(ByteBuffer.wrap(baos.toByteArray()), TestClass.class).getString());
+        assertEquals("b", smileCodec.parse("{\"string\":\"b\"}", TestClass.class).getString());
+    }
+
+    @Test
+    public void testAfterburner() throws Exception {
+        JacksonCodec abCodec = new JacksonCodec();
+        abCodec.enableAfterburner();
+        PublicBean bean = new PublicBean();
+        bean.s = "a";
+        bean.i = 2;
+        bean.b = true;
+        assertTrue(isOptimized(abCodec, PublicBean.class));
+        assertFalse(isOptimized(new JacksonCodec(), PublicBean.class));
+        String json = abCodec.transform(bean);
+        assertEquals(codec.transform(bean), json);
+        PublicBean parsed = abCodec.parse(json, PublicBean.class);
+        assertEquals("a", parsed.s);
+        assertEquals(2, parsed.i);
+        assertTrue(parsed.b);
+        TestClass tc = new TestClass();
+        tc.setString("b");
+        assertEquals("b", abCodec.parse(abCodec.transform(tc), TestClass.class).getString());
+    }
+
+    /**
+     * Whether all the property writers of the bean serializer are generated
+     * by Afterburner.
+     */
+    private static boolean isOptimized(JacksonCodec codec, Class clazz) throws Exception {
+        BeanSerializerBase serializer = (BeanSerializerBase) codec.getMapper().getSerializerProviderInstance().findValueSerializer(clazz);
+        Iterator<PropertyWriter> it = serializer.properties();
+        boolean ret = it.hasNext();
+        while (it.hasNext()) {
+            ret &= it.next().getClass().getName().startsWith("com.fasterxml.jackson.module.afterburner.");
+        }
+        return ret;
+    }
+
+    public static class PublicBean {
+
+        public String s;
+        public int i;
+        public boolean b;
+    }
+
+    @Test
+    public void testBindingCache() throws Exception {
+        JacksonCodec c = new JacksonCodec();
+        c.warmUp(Holder.class, TestClass.class);
+        Holder holder = new Holder();
+        holder.value = new Value();
+        assertEquals("{\"value\":{\"v\":\"x\"}}", c.transform(holder));
+        c.registerStringFormat(Value.class, "value");
+        assertEquals("{\"value\":\"value:x\"}", c.transform(holder));
+        assertEquals("a", c.parse("{\"string\":\"a\"}", TestClass.class).getString());
+    }
+
+    @Test
+    public void testBufferRecyclerPool() throws Exception {
+        JacksonCodec c = new JacksonCodec();
+        StripedBufferRecyclerPool pool = new StripedBufferRecyclerPool(2);
+        c.setBufferRecyclerPool(pool);
+        TestClass tc = new TestClass();
+        tc.setString("2");
+        String json = c.transform(tc);
+        assertEquals(codec.transform(tc), json);
+        assertEquals(codec.prettyPrint(json), c.prettyPrint(json));
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        c.transform(tc, baos);
+        assertEquals(json, baos.toString("UTF-8"));
+        StringWriter sw = new StringWriter();
+        c.transform(tc, sw);
+        assertEquals(json, sw.toString());
+        assertEquals("2", c.parse(json, TestClass.class).getString());
+        assertEquals("2", c.parse(baos.toByteArray(), TestClass.class).getString());
+        assertEquals("2", c.parse(new ByteArrayInputStream(baos.toByteArray())).get("string").asString());
+        assertEquals("2", c.parse(new StringReader(json), TestClass.class).getString());
+        try {
+            c.parse("{\"string\":");
+            fail();
+        } catch (ParseException pe) {
+            // expected
+        }
+        assertEquals(1, pool.size());
+        c.setBufferRecyclerPool(null);
+        assertEquals(json, c.transform(tc));
+    }
+
+    public static class Holder {
+
+        Value value;
+    }
+
+    public static class Value {
+
+        String v = "x";
+
+        @Override
+        public String toString() {
+            return "value:" + v;
+        }
+    }
+}
@@ -16,7 +16,6 @@
 package org.brutusin.json.impl;
 
 import org.brutusin.json.ParseException;
-import org.brutusin.json.impl.serializers.SerializationContext;
 import org.brutusin.json.spi.DataCodecTest;
 import org.brutusin.json.spi.JsonCodec;
 import static org.junit.Assert.*;
@@ -42,13 +41,6 @@ public class JacksonDataTest extends DataCodecTest {
 
     }
 
-    @Test
-    @Override
-    public void testInputStream() throws Exception {
-        super.testInputStream();
-        assertNull(SerializationContext.getCurrentContext());
-    }
-
     class A {
 
         B b;
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import org.brutusin.json.spi.JsonCodec;
+import org.brutusin.json.spi.JsonNode;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class JacksonNodeCursorTest {
+
+    @Test
+    public void testNavigation() throws Exception {
+        InputStream is = new ByteArrayInputStream(new byte[0]);
+        Map<String, InputStream> streams = new HashMap();
+        streams.put("#1#1", is);
+        JacksonNode node = (JacksonNode) JsonCodec.getInstance().parse("{\"a\":[1,{\"b\":\"#1#1\"}],\"c\":2.5}", streams);
+        JacksonNodeCursor cursor = node.cursor();
+        assertEquals(JsonNode.Type.OBJECT, cursor.getNodeType());
+        assertFalse(cursor.moveTo("x"));
+        assertEquals(0, cursor.getDepth());
+        assertTrue(cursor.moveTo("a"));
+        assertEquals(2, cursor.getSize());
+        assertTrue(cursor.moveTo(0));
+        assertEquals(1, cursor.asInt());
+        assertTrue(cursor.moveToParent());
+        assertTrue(cursor.moveTo(1));
+        assertTrue(cursor.moveTo("b"));
+        assertEquals(3, cursor.getDepth());
+        assertSame(is, cursor.asStream());
+        assertEquals(node.get("a").get(1).get("b"), cursor.toJacksonNode());
+        cursor.reset();
+        assertFalse(cursor.moveToParent());
+        assertTrue(cursor.moveTo("c"));
+        assertEquals(2.5, cursor.asDouble(), 0);
+    }
+}
@@ -15,8 +15,17 @@
  */
 package org.brutusin.json.impl;
 
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.brutusin.commons.Bean;
+import org.brutusin.json.ValidationException;
 import static org.junit.Assert.*;
 import org.brutusin.json.spi.JsonCodec;
 import org.brutusin.json.spi.JsonNode;
@@ -70,6 +79,162 @@ public class JacksonSchemaTest extends SchemaCodecTest {
         System.out.println( JsonCodec.getInstance().getSchema(MyEnum.class));
     }
 
+    @Test
+    public void testSchemaCache() throws Exception {
+        JacksonCodec codec = new JacksonCodec();
+        String schema = codec.getSchemaString(LocaleClass.class);
+        assertSame(schema, codec.getSchemaString(LocaleClass.class));
+        assertFalse(schema.contains("\"format\":\"locale\""));
+        codec.registerStringFormat(Locale.class, "locale");
+        assertTrue(codec.getSchemaString(LocaleClass.class).contains("\"format\":\"locale\""));
+    }
+
+    @Test
+    public void testCustomFactoryWrapper() throws Exception {
+        JacksonCodec codec = new JacksonCodec(null, new TitledFactoryWrapper(new HashMap<Class, String>()));
+        assertTrue(codec.getSchemaString(LocaleClass.class).contains("\"title\":\"custom\""));
+        assertTrue(codec.getSchemaString(String.class).contains("\"title\":\"custom\""));
+    }
+
+    public static class TitledFactoryWrapper extends JacksonFactoryWrapper {
+
+        public TitledFactoryWrapper(Map<Class, String> formatMap) {
+            super(formatMap);
+        }
+
+        @Override
+        public com.fasterxml.jackson.module.jsonSchema.JsonSchema finalSchema() {
+            com.fasterxml.jackson.module.jsonSchema.JsonSchema ret = super.finalSchema();
+            ((com.fasterxml.jackson.module.jsonSchema.types.SimpleTypeSchema) ret).setTitle("custom");
+            return ret;
+        }
+    }
+
+    @Test
+    public void testValidatorCache() throws Exception {
+        ValidatorCache cache = ValidatorCache.getInstance();
+        String schema = "{\"type\":\"object\",\"properties\":{\"cacheTest\":{\"type\":\"integer\"}}}";
+        JsonNode node = JsonCodec.getInstance().parse("{\"cacheTest\":1}");
+        long misses = cache.getMissCount();
+        JsonCodec.getInstance().parseSchema(schema).validate(node);
+        assertEquals(misses + 1, cache.getMissCount());
+        long hits = cache.getHitCount();
+        JsonCodec.getInstance().parseSchema(schema).validate(node);
+        assertEquals(misses + 1, cache.getMissCount());
+        assertEquals(hits + 1, cache.getHitCount());
+    }
+
+    @Test
+    public void testSubSchemas() throws Exception {
+        String schemaStr = "{\"type\":\"object\",\"properties\":{\"a\":{\"type\":\"array\",\"items\":{\"type\":\"integer\"}}},\"additionalProperties\":{\"type\":\"boolean\"}}";
+        JsonSchema schema = JsonCodec.getInstance().parseSchema(schemaStr);
+        JsonSchema propSchema = schema.getPropertySchema("a");
+        assertSame(propSchema, schema.getPropertySchema("a"));
+        assertNull(schema.getPropertySchema("b"));
+        assertEquals(JsonCodec.getInstance().parseSchema("{\"type\":\"array\",\"items\":{\"type\":\"integer\"}}"), propSchema);
+        assertEquals(JsonNode.Type.BOOLEAN.name(), schema.getAdditionalPropertiesSchema().getSchemaType().name());
+        JsonSchema itemSchema = propSchema.getItemSchema();
+        itemSchema.validate(JsonCodec.getInstance().parse("3"));
+        try {
+            itemSchema.validate(JsonCodec.getInstance().parse("\"3\""));
+            fail();
+        } catch (ValidationException ex) {
+        }
+    }
+
+    @Test
+    public void testValidateAll() throws Exception {
+        JacksonSchema schema = (JacksonSchema) JsonCodec.getInstance().parseSchema("{\"type\":\"integer\",\"maximum\":100}");
+        List<JsonNode> nodes = new ArrayList();
+        for (int i = 0; i < 1000; i++) {
+            nodes.add(JsonCodec.getInstance().parse(String.valueOf(i % 200)));
+        }
+        List<ValidationResult> results = schema.validateAll(nodes);
+        assertEquals(nodes.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            ValidationResult result = results.get(i);
+            assertEquals(i, result.getIndex());
+            assertEquals(i % 200 <= 100, result.isValid());
+            assertEquals(result.isValid(), result.getMessages().isEmpty());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertEquals(results.toString(), schema.validateAll(nodes, executor).toString());
+            assertTrue(schema.validateAsync(nodes.get(1), executor).get().isValid());
+            assertFalse(schema.validateAsync(nodes.get(101), executor).get().isValid());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testValidateAllFailure() throws Exception {
+        JacksonSchema schema = (JacksonSchema) JsonCodec.getInstance().parseSchema("{\"type\":\"integer\"}");
+        List<JsonNode> nodes = new ArrayList();
+        nodes.add(JsonCodec.getInstance().parse("1"));
+        nodes.add(new JacksonNode(IntNode.valueOf(2)) {
+            @Override
+            public com.fasterxml.jackson.databind.JsonNode getNode() {
+                throw new IllegalStateException("unreadable");
+            }
+        });
+        nodes.add(JsonCodec.getInstance().parse("\"a\""));
+        List<ValidationResult> results = schema.validateAll(nodes);
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isValid());
+        assertFalse(results.get(1).isValid());
+        assertTrue(results.get(1).getFailure() instanceof IllegalStateException);
+        assertNull(results.get(1).getException());
+        assertFalse(results.get(2).isValid());
+        assertNull(results.get(2).getFailure());
+    }
+
+    @Test
+    public void testFailFast() throws Exception {
+        JacksonSchema schema = (JacksonSchema) JsonCodec.getInstance().parseSchema("{\"type\":\"object\",\"properties\":{\"a\":{\"type\":\"integer\"},\"b\":{\"type\":\"string\"}}}");
+        JsonNode node = JsonCodec.getInstance().parse("{\"a\":\"1\",\"b\":2}");
+        try {
+            schema.validate(node);
+            fail();
+        } catch (JacksonValidationException ex) {
+            assertEquals(2, ex.getErrors().size());
+            assertEquals(2, ex.getMessages().size());
+            assertEquals("type", ex.getErrors().get(0).getKeyword());
+        }
+        try {
+            schema.validate(node, true);
+            fail();
+        } catch (JacksonValidationException ex) {
+            assertEquals(1, ex.getErrors().size());
+            ValidationError error = ex.getErrors().get(0);
+            assertEquals("type", error.getKeyword());
+            assertTrue(error.getPointer().equals("/a") || error.getPointer().equals("/b"));
+            assertEquals(error.getMessage(), ex.getMessages().get(0));
+        }
+        schema.validate(JsonCodec.getInstance().parse("{\"a\":1,\"b\":\"2\"}"), true);
+    }
+
+    @Test
+    public void testInvalidSchema() throws Exception {
+        JacksonSchema schema = (JacksonSchema) JsonCodec.getInstance().parseSchema("{\"type\":\"object\",\"properties\":{\"a\":{\"type\":\"integer\",\"minimum\":\"x\"}}}");
+        JsonNode node = JsonCodec.getInstance().parse("{\"a\":\"1\"}");
+        for (boolean failFast : new boolean[]{false, true}) {
+            try {
+                schema.validate(node, failFast);
+                fail();
+            } catch (SchemaProcessingException ex) {
+                assertTrue(ex.getCause() instanceof ProcessingException);
+                assertEquals(1, ex.getErrors().size());
+                assertEquals(((ProcessingException) ex.getCause()).getProcessingMessage().getMessage(), ex.getMessages().get(0));
+            }
+        }
+    }
+
+    public static class LocaleClass {
+
+        private Locale locale;
+    }
+
     public static class TestClass {
 
         private Map<String, String> properties;
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.impl.metrics.CodecMetrics.Operation;
+import org.brutusin.json.impl.metrics.InMemoryCodecMetrics;
+import org.brutusin.json.spi.JsonCodec;
+import org.brutusin.json.spi.JsonNode;
+import org.brutusin.json.spi.TestClass;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class JsonArraySpliteratorTest {
+
+    private static final int SIZE = 5000;
+
+    private static InputStream createArray(String prefix, String suffix) throws Exception {
+        StringBuilder sb = new StringBuilder(prefix).append("[");
+        for (int i = 0; i < SIZE; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append("{\"string\":\"s").append(i).append("\",\"aint\":").append(i).append("}");
+        }
+        sb.append("]").append(suffix);
+        return new ByteArrayInputStream(sb.toString().getBytes("UTF-8"));
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        List<TestClass> list = codec.parseArray(createArray("", ""), TestClass.class).stream(false).collect(Collectors.<TestClass>toList());
+        assertEquals(SIZE, list.size());
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(Integer.valueOf(i), list.get(i).getAint());
+        }
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        List<Integer> list = codec.parseArray(createArray("", ""), TestClass.class).stream(true).map(new Function<TestClass, Integer>() {
+            @Override
+            public Integer apply(TestClass tc) {
+                return tc.getAint();
+            }
+        }).collect(Collectors.<Integer>toList());
+        assertEquals(SIZE, list.size());
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(Integer.valueOf(i), list.get(i));
+        }
+    }
+
+    @Test
+    public void testPointer() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        InputStream is = createArray("{\"skip\":{\"a\":[1,2]},\"data\":[0,{\"x/y\":", "}],\"after\":1}");
+        JsonArraySpliterator<JsonNode> spliterator = codec.parseArray(is, "/data/1/x~1y", JsonNode.class);
+        assertEquals(SIZE, spliterator.stream(true).count());
+        try {
+            codec.parseArray(createArray("{\"data\":", "}"), "/other", JsonNode.class);
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            codec.parseArray(new ByteArrayInputStream("{\"data\":1}".getBytes("UTF-8")), "/data", JsonNode.class);
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        JacksonCodec codec = new JacksonCodec();
+        InMemoryCodecMetrics metrics = new InMemoryCodecMetrics();
+        codec.setMetrics(metrics);
+        assertEquals(SIZE, codec.parseArray(createArray("", ""), TestClass.class).stream(false).count());
+        assertEquals(SIZE, metrics.getCount(Operation.PARSE));
+        assertTrue(metrics.getTotalBytes(Operation.PARSE) > 0);
+        metrics.reset();
+        assertEquals(SIZE, codec.parseArray(createArray("", ""), TestClass.class).stream(true).count());
+        assertEquals(SIZE, metrics.getCount(Operation.PARSE));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        Class[] causes = new Class[2];
+        for (int i = 0; i < 2; i++) {
+            boolean parallel = i == 1;
+            try {
+                codec.parseArray(createArray("{\"data\":[{\"aint\":1},{\"aint\":}],\"other\":", "}"), "/data", TestClass.class).stream(parallel).count();
+                fail();
+            } catch (RuntimeException ex) {
+                assertTrue(getRootCause(ex) instanceof JsonParseException);
+                assertTrue(hasParseExceptionCause(ex));
+            }
+            try {
+                codec.parseArray(createArray("{\"data\":[{\"aint\":\"x\"},", "]}"), "/data", TestClass.class).stream(parallel).count();
+                fail();
+            } catch (RuntimeException ex) {
+                causes[i] = getRootCause(ex).getClass();
+            }
+        }
+        assertEquals(causes[0], causes[1]);
+    }
+
+    private static Throwable getRootCause(Throwable th) {
+        while (th.getCause() != null) {
+            th = th.getCause();
+        }
+        return th;
+    }
+
+    private static boolean hasParseExceptionCause(Throwable th) {
+        for (Throwable cause = th.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ParseException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import org.brutusin.commons.io.MetaDataInputStream;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.spi.JsonCodec;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class JsonEnvelopeReaderTest {
+
+    private static final byte[] FILE_CONTENT = createBytes(200000, 1);
+    private static final byte[] ARRAY_CONTENT = createBytes(1000, 2);
+    private static final byte[] STREAM_CONTENT = createBytes(150000, 3);
+
+    private static byte[] createBytes(int len, int seed) {
+        byte[] ret = new byte[len];
+        for (int i = 0; i < len; i++) {
+            ret[i] = (byte) (i * seed);
+        }
+        return ret;
+    }
+
+    private static File createFile(byte[] content) throws IOException {
+        File file = File.createTempFile("envelope", ".bin");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(content);
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = is.read(buf)) >= 0) {
+            baos.write(buf, 0, n);
+        }
+        return baos.toByteArray();
+    }
+
+    private static Upload createUpload(boolean chunked) throws IOException {
+        Upload upload = new Upload();
+        upload.name = "upload";
+        upload.file = new FileInputStream(createFile(FILE_CONTENT));
+        upload.array = new ByteArrayInputStream(ARRAY_CONTENT);
+        if (chunked) {
+            upload.stream = new FilterInputStream(new ByteArrayInputStream(STREAM_CONTENT)) {
+            };
+        }
+        return upload;
+    }
+
+    private static byte[] contentOf(Upload upload, InputStream attachment) {
+        if (attachment == upload.file) {
+            return FILE_CONTENT;
+        } else if (attachment == upload.array) {
+            return ARRAY_CONTENT;
+        }
+        return STREAM_CONTENT;
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        codec.writeEnvelope(createUpload(true), baos);
+        JsonEnvelopeReader<Upload> reader = codec.readEnvelope(new ByteArrayInputStream(baos.toByteArray()), Upload.class);
+        try {
+            Upload upload = reader.getValue();
+            assertEquals("upload", upload.name);
+            assertEquals(3, reader.getAttachments().size());
+            assertEquals(FILE_CONTENT.length, ((JsonEnvelopeReader.Attachment) upload.file).length());
+            assertEquals(-1, ((JsonEnvelopeReader.Attachment) upload.stream).length());
+            InputStream[] attachments = reader.getAttachments().values().toArray(new InputStream[3]);
+            assertTrue(Arrays.equals(contentOf(upload, attachments[1]), readAll(attachments[1])));
+            try {
+                attachments[0].read();
+                fail();
+            } catch (IOException ex) {
+                // already skipped
+            }
+            assertTrue(Arrays.equals(contentOf(upload, attachments[2]), readAll(attachments[2])));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testPositional() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        File file = File.createTempFile("envelope", ".bin");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            codec.writeEnvelope(createUpload(false), fos);
+        } finally {
+            fos.close();
+        }
+        JsonEnvelopeReader<Upload> reader = codec.readEnvelope(file.toPath(), Upload.class);
+        try {
+            Upload upload = reader.getValue();
+            assertNull(upload.stream);
+            assertTrue(Arrays.equals(ARRAY_CONTENT, readAll(upload.array)));
+            assertTrue(Arrays.equals(FILE_CONTENT, readAll(upload.file)));
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            codec.writeEnvelope(upload, baos);
+            JsonEnvelopeReader<Upload> copy = codec.readEnvelope(new ByteArrayInputStream(baos.toByteArray()), Upload.class);
+            Iterator<InputStream> it = copy.getAttachments().values().iterator();
+            assertEquals(0, readAll(it.next()).length);
+            assertEquals(0, readAll(it.next()).length);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testMetaData() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        MetaUpload upload = new MetaUpload();
+        upload.file = new MetaDataInputStream(new FileInputStream(createFile(FILE_CONTENT)), "file.bin", "application/octet-stream", null);
+        upload.stream = new MetaDataInputStream(new FilterInputStream(new ByteArrayInputStream(STREAM_CONTENT)) {
+        }, "stream.bin", null, (long) STREAM_CONTENT.length);
+        File file = File.createTempFile("envelope", ".bin");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            codec.writeEnvelope(upload, fos);
+        } finally {
+            fos.close();
+        }
+        JsonEnvelopeReader<MetaUpload> reader = codec.readEnvelope(file.toPath(), MetaUpload.class);
+        try {
+            MetaUpload read = reader.getValue();
+            assertEquals("file.bin", read.file.getName());
+            assertEquals("application/octet-stream", read.file.getContentType());
+            assertEquals(Long.valueOf(FILE_CONTENT.length), read.file.getLength());
+            assertEquals("stream.bin", read.stream.getName());
+            assertNull(read.stream.getContentType());
+            assertEquals(Long.valueOf(STREAM_CONTENT.length), read.stream.getLength());
+            // declared lengths allow positional reads in any order
+            assertTrue(Arrays.equals(STREAM_CONTENT, readAll(read.stream)));
+            assertTrue(Arrays.equals(FILE_CONTENT, readAll(read.file)));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = ParseException.class)
+    public void testInvalid() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        codec.readEnvelope(new ByteArrayInputStream("{\"name\":\"a\"}".getBytes("UTF-8")), Upload.class);
+    }
+
+    @Test
+    public void testSourceClosedOnError() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        final boolean[] closed = new boolean[1];
+        InputStream is = new FilterInputStream(new ByteArrayInputStream("{\"name\":\"a\"}".getBytes("UTF-8"))) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+        try {
+            codec.readEnvelope(is, Upload.class);
+            fail();
+        } catch (ParseException ex) {
+            assertTrue(closed[0]);
+        }
+    }
+
+    @Test
+    public void testDeclaredLengthMismatch() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        long[] lengths = {STREAM_CONTENT.length - 1, STREAM_CONTENT.length + 1};
+        for (long length : lengths) {
+            MetaUpload upload = new MetaUpload();
+            upload.stream = new MetaDataInputStream(new FilterInputStream(new ByteArrayInputStream(STREAM_CONTENT)) {
+            }, "stream.bin", null, length);
+            try {
+                codec.writeEnvelope(upload, new ByteArrayOutputStream());
+                fail();
+            } catch (RuntimeException ex) {
+                assertTrue(ex.getCause() instanceof IOException);
+            }
+        }
+        MetaUpload upload = new MetaUpload();
+        upload.file = new MetaDataInputStream(new FileInputStream(createFile(FILE_CONTENT)), "file.bin", null, (long) FILE_CONTENT.length + 1);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            codec.writeEnvelope(upload, baos);
+            fail();
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+            assertEquals(0, baos.size());
+        }
+    }
+
+    public static class Upload {
+
+        String name;
+        InputStream file;
+        InputStream array;
+        InputStream stream;
+    }
+
+    public static class MetaUpload {
+
+        MetaDataInputStream file;
+        MetaDataInputStream stream;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.spi.JsonCodec;
+import org.brutusin.json.spi.JsonNode;
+import org.brutusin.json.spi.TestClass;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class JsonFeederTest {
+
+    private static final int ELEMENTS = 500;
+
+    private static <T> Consumer<T> collector(final List<T> list) {
+        return new Consumer<T>() {
+            @Override
+            public void accept(T t) {
+                list.add(t);
+            }
+        };
+    }
+
+    /**
+     * Feeds the content in chunks of the specified size.
+     */
+    private static void feed(JsonFeeder feeder, byte[] content, int chunkSize) throws ParseException {
+        ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+        for (int i = 0; i < content.length; i += chunkSize) {
+            chunk.clear();
+            chunk.put(content, i, Math.min(chunkSize, content.length - i));
+            chunk.flip();
+            feeder.feed(chunk);
+            assertFalse(chunk.hasRemaining());
+        }
+        feeder.end();
+    }
+
+    @Test
+    public void testArrayElements() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        StringBuilder sb = new StringBuilder(" [");
+        for (int i = 0; i < ELEMENTS; i++) {
+            if (i > 0) {
+                sb.append(i % 7 == 0 ? " ,\n" : ",");
+            }
+            sb.append("{\"string\":\"s\\\"]}").append(i).append("\",\"aint\":").append(i).append("}");
+        }
+        byte[] content = sb.append("]\n").toString().getBytes("UTF-8");
+        for (int chunkSize : new int[]{1, 3, 64, content.length}) {
+            List<TestClass> list = new ArrayList();
+            feed(codec.newArrayFeeder(TestClass.class, collector(list)), content, chunkSize);
+            assertEquals(ELEMENTS, list.size());
+            for (int i = 0; i < ELEMENTS; i++) {
+                assertEquals("s\"]}" + i, list.get(i).getString());
+                assertEquals(Integer.valueOf(i), list.get(i).getAint());
+            }
+        }
+    }
+
+    @Test
+    public void testValues() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        byte[] content = "{\"a\":[1,{\"b\":\"}\"}]} \"x\\\\\"12\n[true,null] -3.5e2\n\"\"{}false".getBytes("UTF-8");
+        for (int chunkSize = 1; chunkSize <= content.length; chunkSize++) {
+            List<JsonNode> list = new ArrayList();
+            JsonFeeder<JsonNode> feeder = codec.newFeeder(JsonNode.class, collector(list));
+            feed(feeder, content, chunkSize);
+            assertEquals(8, list.size());
+            assertEquals("}", list.get(0).get("a").get(1).get("b").asString());
+            assertEquals("x\\", list.get(1).asString());
+            assertEquals(Long.valueOf(12), list.get(2).asLong());
+            assertEquals(2, list.get(3).getSize());
+            assertEquals(Double.valueOf(-350), list.get(4).asDouble());
+            assertEquals("", list.get(5).asString());
+            assertEquals(0, list.get(6).getSize());
+            assertEquals(Boolean.FALSE, list.get(7).asBoolean());
+            assertEquals(0, feeder.getBufferedBytes());
+        }
+    }
+
+    @Test
+    public void testBufferedBytes() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        List<JsonNode> list = new ArrayList();
+        JsonFeeder<JsonNode> feeder = codec.newArrayFeeder(JsonNode.class, collector(list));
+        byte[] content = "[1,{\"a\":".getBytes("UTF-8");
+        feeder.feed(content, 0, content.length);
+        assertEquals(1, list.size());
+        assertEquals(5, feeder.getBufferedBytes());
+        content = "2}]".getBytes("UTF-8");
+        feeder.feed(content, 0, content.length);
+        feeder.end();
+        assertEquals(2, list.size());
+        assertEquals(Integer.valueOf(2), list.get(1).get("a").asInteger());
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        String[] arrays = {"{}", "[1 2]", "[1,]", "[,1]", "[1]2", "[1", "[{\"a\":1]", "[tru]"};
+        for (String json : arrays) {
+            try {
+                byte[] content = json.getBytes("UTF-8");
+                feed(codec.newArrayFeeder(JsonNode.class, collector(new ArrayList())), content, 1);
+                fail(json);
+            } catch (ParseException ex) {
+                // expected
+            }
+        }
+        String[] values = {"1}", "{\"a\":", "\"abc", "nul"};
+        for (String json : values) {
+            try {
+                byte[] content = json.getBytes("UTF-8");
+                feed(codec.newFeeder(JsonNode.class, collector(new ArrayList())), content, 1);
+                fail(json);
+            } catch (ParseException ex) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.impl.metrics.CodecMetrics.Operation;
+import org.brutusin.json.impl.metrics.InMemoryCodecMetrics;
+import org.brutusin.json.spi.JsonCodec;
+import org.brutusin.json.spi.JsonNode;
+import org.brutusin.json.spi.TestClass;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class JsonLinesReaderTest {
+
+    private static final int LINES = 1000;
+
+    private static byte[] createContent() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            sb.append("{\"string\":\"s").append(i).append("\",\"aint\":").append(i).append("}");
+            sb.append(i % 10 == 0 ? "\r\n\n  \n" : "\n");
+        }
+        return sb.toString().getBytes("UTF-8");
+    }
+
+    private static void assertContent(JsonLinesReader<TestClass> reader) throws Exception {
+        try {
+            int i = 0;
+            while (reader.hasNext()) {
+                TestClass tc = reader.next();
+                assertEquals("s" + i, tc.getString());
+                assertEquals(Integer.valueOf(i), tc.getAint());
+                i++;
+            }
+            assertEquals(LINES, i);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        assertContent(codec.readLines(new ByteArrayInputStream(createContent()), TestClass.class));
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertContent(codec.readLines(new ByteArrayInputStream(createContent()), TestClass.class, executor, 16));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBinaryFormatCodec() throws Exception {
+        JacksonCodec codec = new JacksonCodec();
+        codec.setDataFormat(DataFormat.SMILE);
+        assertContent(codec.readLines(new ByteArrayInputStream(createContent()), TestClass.class));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertContent(codec.readLines(new ByteArrayInputStream(createContent()), TestClass.class, executor, 16));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testMalformedLine() throws Exception {
+        JacksonCodec codec = new JacksonCodec();
+        InMemoryCodecMetrics metrics = new InMemoryCodecMetrics();
+        codec.setMetrics(metrics);
+        byte[] content = "{\"string\":\"a\"}\n{\"string\":}\n".getBytes("UTF-8");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            JsonLinesReader[] readers = {
+                codec.readLines(new ByteArrayInputStream(content), TestClass.class),
+                codec.readLines(new ByteArrayInputStream(content), TestClass.class, executor, 2)
+            };
+            for (JsonLinesReader<TestClass> reader : readers) {
+                try {
+                    assertEquals("a", reader.next().getString());
+                    reader.next();
+                    fail();
+                } catch (RuntimeException ex) {
+                    assertTrue(ex.getCause() instanceof ParseException);
+                } finally {
+                    reader.close();
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2, metrics.getCount(Operation.PARSE));
+    }
+
+    @Test
+    public void testTrailingContent() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        byte[] content = "1  \n2 3\n4\n".getBytes("UTF-8");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            JsonLinesReader[] readers = {
+                codec.readLines(new ByteArrayInputStream(content), JsonNode.class),
+                codec.readLines(new ByteArrayInputStream(content), JsonNode.class, executor, 2)
+            };
+            for (JsonLinesReader<JsonNode> reader : readers) {
+                try {
+                    assertEquals(Long.valueOf(1), reader.next().asLong());
+                    assertEquals(Long.valueOf(2), reader.next().asLong());
+                    reader.next();
+                    fail();
+                } catch (RuntimeException ex) {
+                    assertTrue(ex.getCause() instanceof ParseException);
+                } finally {
+                    reader.close();
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseCancelsPending() throws Exception {
+        JacksonCodec codec = new JacksonCodec();
+        InMemoryCodecMetrics metrics = new InMemoryCodecMetrics();
+        codec.setMetrics(metrics);
+        final List<Runnable> tasks = new ArrayList();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        JsonLinesReader<TestClass> reader = codec.readLines(new ByteArrayInputStream(createContent()), TestClass.class, executor, 8);
+        assertTrue(reader.hasNext());
+        assertEquals(8, tasks.size());
+        reader.close();
+        for (Runnable task : tasks) {
+            task.run();
+        }
+        assertEquals(0, metrics.getCount(Operation.PARSE));
+    }
+
+    @Test
+    public void testPathAndNodes() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        File file = File.createTempFile("lines", ".jsonl");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(createContent());
+        } finally {
+            fos.close();
+        }
+        assertContent(codec.readLines(file.toPath(), TestClass.class));
+        List<JsonNode> nodes = new ArrayList();
+        JsonLinesReader<JsonNode> reader = codec.readLines(file.toPath(), JsonNode.class);
+        try {
+            while (reader.hasNext()) {
+                nodes.add(reader.next());
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(LINES, nodes.size());
+        assertEquals("s5", nodes.get(5).get("string").asString());
+        assertEquals(LINES, codec.readLines(file.toPath(), JsonNode.class).stream().count());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        InputStream is = new ByteArrayInputStream("\n \n".getBytes("UTF-8"));
+        assertFalse(codec.readLines(is, TestClass.class).hasNext());
+        is = new ByteArrayInputStream("\n \n".getBytes("UTF-8"));
+        assertFalse(codec.readLines(is, TestClass.class, Executors.newSingleThreadExecutor(), 2).hasNext());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMalformed() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        InputStream is = new ByteArrayInputStream("{\"aint\":1}\n{\"aint\":\n".getBytes("UTF-8"));
+        JsonLinesReader<TestClass> reader = codec.readLines(is, TestClass.class, Executors.newSingleThreadExecutor(), 2);
+        reader.next();
+        reader.next();
+    }
+}
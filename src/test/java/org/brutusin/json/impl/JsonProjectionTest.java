@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+import org.brutusin.json.spi.JsonCodec;
+import org.brutusin.json.spi.JsonNode;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class JsonProjectionTest {
+
+    private static final String JSON = "{\"header\":{\"id\":\"h1\",\"ts\":1},"
+            + "\"payload\":{\"type\":\"t\",\"body\":{\"big\":[1,2,3]}},"
+            + "\"list\":[{\"x\":1},{\"x\":2},{\"x\":3}],"
+            + "\"a/b\":{\"m~n\":5},\"n\":null}";
+
+    @Test
+    public void testPointers() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        Map<String, JsonNode> values = codec.project(JSON, "/header/id", "/missing", "/list/2/x", "/a~1b/m~0n", "/payload", "/payload/body/big/1", "/n", "/list/7");
+        assertEquals(6, values.size());
+        assertEquals("h1", values.get("/header/id").asString());
+        assertEquals(Integer.valueOf(3), values.get("/list/2/x").asInteger());
+        assertEquals(Integer.valueOf(5), values.get("/a~1b/m~0n").asInteger());
+        assertEquals("t", values.get("/payload").get("type").asString());
+        assertEquals(Integer.valueOf(2), values.get("/payload/body/big/1").asInteger());
+        assertEquals(JsonNode.Type.NULL, values.get("/n").getNodeType());
+        assertEquals(codec.parse(JSON), codec.project(JSON, "").get(""));
+        assertTrue(codec.project("", "/a").isEmpty());
+    }
+
+    @Test
+    public void testStopsWhenResolved() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        byte[] json = "{\"header\":{\"id\":\"h1\"},\"rest\":[1,2,".getBytes("UTF-8");
+        Map<String, JsonNode> values = codec.project(new ByteArrayInputStream(json), "/header/id");
+        assertEquals("h1", values.get("/header/id").asString());
+    }
+
+    @Test
+    public void testBinding() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        Routing routing = codec.project(JSON.getBytes("UTF-8"), Routing.class, "/header/id", "/payload/type");
+        assertEquals("h1", routing.header.id);
+        assertEquals(0, routing.header.ts);
+        assertEquals("t", routing.payload.type);
+        assertNull(codec.project(JSON, Routing.class, "/missing"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPointer() throws Exception {
+        JacksonCodec codec = (JacksonCodec) JsonCodec.getInstance();
+        codec.project(JSON, "header");
+    }
+
+    public static class Routing {
+
+        Header header;
+        Payload payload;
+    }
+
+    public static class Header {
+
+        String id;
+        long ts;
+    }
+
+    public static class Payload {
+
+        String type;
+    }
+}
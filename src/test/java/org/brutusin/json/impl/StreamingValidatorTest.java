@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.brutusin.json.ParseException;
+import org.brutusin.json.spi.JsonCodec;
+import org.brutusin.json.spi.TestClass;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class StreamingValidatorTest {
+
+    private static final String SCHEMA = "{\"type\":\"object\",\"properties\":{"
+            + "\"id\":{\"type\":\"integer\",\"required\":true,\"minimum\":0},"
+            + "\"name\":{\"type\":\"string\",\"pattern\":\"^[a-z]+$\"},"
+            + "\"color\":{\"type\":\"string\",\"enum\":[\"red\",\"blue\"]},"
+            + "\"tags\":{\"type\":\"array\",\"items\":{\"type\":\"string\"}},"
+            + "\"extra\":{\"type\":\"object\",\"additionalProperties\":{\"type\":\"number\",\"maximum\":10}}"
+            + "},\"additionalProperties\":false}";
+
+    @Test
+    public void testValid() throws Exception {
+        StreamingValidator validator = getValidator(SCHEMA);
+        validator.validate(toStream("{\"id\":1,\"name\":\"abc\",\"color\":\"red\",\"tags\":[\"a\",\"b\"],\"extra\":{\"x\":1.5,\"y\":10}}"));
+        validator.validate(toStream("{\"id\":0}"));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        StreamingValidator validator = getValidator(SCHEMA);
+        String json = "{\"name\":\"ABC\",\"color\":\"green\",\"tags\":[\"a\",2],\"extra\":{\"x\":11,\"y/z\":true},\"other\":1}";
+        try {
+            validator.validate(toStream(json));
+            fail();
+        } catch (JacksonValidationException ex) {
+            List<String> errors = new ArrayList();
+            for (ValidationError error : ex.getErrors()) {
+                errors.add(error.getKeyword() + "@" + error.getPointer());
+            }
+            assertEquals("[pattern@/name, enum@/color, type@/tags/1, maximum@/extra/x, type@/extra/y~1z, additionalProperties@, required@]", errors.toString());
+        }
+        try {
+            validator.validate(toStream(json), 1);
+            fail();
+        } catch (JacksonValidationException ex) {
+            assertEquals(1, ex.getErrors().size());
+            assertEquals("/name", ex.getErrors().get(0).getPointer());
+        }
+        try {
+            validator.validate(toStream("[1]"));
+            fail();
+        } catch (JacksonValidationException ex) {
+            assertEquals("type", ex.getErrors().get(0).getKeyword());
+        }
+    }
+
+    @Test
+    public void testPatternProperties() throws Exception {
+        assertSameVerdicts("{\"type\":\"object\",\"properties\":{\"xb\":{\"type\":\"string\",\"pattern\":\"^a\"}},"
+                + "\"patternProperties\":{\"^x\":{\"type\":\"string\"}},\"additionalProperties\":false}",
+                new String[]{"{\"xa\":\"1\"}", "{\"xb\":\"a1\"}", "{}"},
+                new String[]{"{\"xa\":1}", "{\"xb\":\"b\"}", "{\"xb\":1}", "{\"y\":\"1\"}"});
+    }
+
+    @Test
+    public void testEnumWithOtherKeywords() throws Exception {
+        assertSameVerdicts("{\"type\":\"string\",\"enum\":[\"a\",\"bb\",\"c1\"],\"pattern\":\"^[a-z]+$\"}",
+                new String[]{"\"a\"", "\"bb\""},
+                new String[]{"\"c1\"", "\"d\"", "1"});
+        assertSameVerdicts("{\"type\":\"integer\",\"enum\":[1,5,20],\"maximum\":10}",
+                new String[]{"1", "5"},
+                new String[]{"20", "2"});
+        assertSameVerdicts("{\"type\":\"object\",\"enum\":[{\"a\":1},{\"a\":\"x\"}],\"properties\":{\"a\":{\"type\":\"integer\"}}}",
+                new String[]{"{\"a\":1}"},
+                new String[]{"{\"a\":\"x\"}", "{\"a\":2}"});
+    }
+
+    @Test
+    public void testEnumNumericEquality() throws Exception {
+        assertSameVerdicts("{\"type\":\"number\",\"enum\":[1,2.5]}",
+                new String[]{"1", "1.0", "2.50"},
+                new String[]{"1.5", "2"});
+        assertSameVerdicts("{\"type\":\"array\",\"enum\":[[1,{\"a\":2}]]}",
+                new String[]{"[1.0,{\"a\":2.0}]"},
+                new String[]{"[1,{\"a\":3}]"});
+    }
+
+    @Test
+    public void testUndeclaredRequiredProperty() throws Exception {
+        assertSameVerdicts("{\"properties\":{\"b\":{\"type\":\"string\"}},\"required\":[\"a\",\"b\"]}",
+                new String[]{"{\"a\":1,\"b\":\"x\"}"},
+                new String[]{"{\"b\":\"x\"}", "{\"a\":1}"});
+    }
+
+    @Test
+    public void testUnsupportedKeywords() throws Exception {
+        String[] schemas = {
+            "{\"type\":\"string\",\"minLength\":2}",
+            "{\"type\":\"object\",\"properties\":{\"a\":{\"type\":\"array\",\"maxItems\":1}}}",
+            "{\"type\":\"string\",\"format\":\"email\"}",
+            "{\"type\":[\"string\",{\"type\":\"integer\"}]}"
+        };
+        for (String schema : schemas) {
+            try {
+                getValidator(schema);
+                fail(schema);
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+        getValidator("{\"type\":\"string\",\"format\":\"inputstream\",\"title\":\"t\",\"dependsOn\":[\"a\"]}");
+    }
+
+    @Test(expected = ParseException.class)
+    public void testMalformed() throws Exception {
+        getValidator(SCHEMA).validate(toStream("{\"id\":1,"));
+    }
+
+    @Test
+    public void testGeneratedSchema() throws Exception {
+        JacksonSchema schema = (JacksonSchema) JsonCodec.getInstance().getSchema(TestClass.class);
+        TestClass tc = new TestClass();
+        tc.setString("2");
+        String json = JsonCodec.getInstance().transform(tc);
+        try {
+            schema.getStreamingValidator().validate(toStream(json));
+            fail();
+        } catch (JacksonValidationException ex) {
+            assertEquals("required", ex.getErrors().get(0).getKeyword());
+        }
+        tc.setAint(1);
+        json = JsonCodec.getInstance().transform(tc);
+        schema.validate(JsonCodec.getInstance().parse(json));
+        schema.getStreamingValidator().validate(toStream(json));
+        assertSame(schema.getStreamingValidator(), schema.getStreamingValidator());
+    }
+
+    /**
+     * Checks that the streaming and tree validators agree on every document.
+     */
+    private static void assertSameVerdicts(String schemaString, String[] valid, String[] invalid) throws Exception {
+        JacksonSchema schema = (JacksonSchema) JsonCodec.getInstance().parseSchema(schemaString);
+        for (String json : valid) {
+            schema.validate(JsonCodec.getInstance().parse(json));
+            schema.getStreamingValidator().validate(toStream(json));
+        }
+        for (String json : invalid) {
+            try {
+                schema.validate(JsonCodec.getInstance().parse(json));
+                fail(json);
+            } catch (JacksonValidationException ex) {
+                // expected
+            }
+            try {
+                schema.getStreamingValidator().validate(toStream(json));
+                fail(json);
+            } catch (JacksonValidationException ex) {
+                // expected
+            }
+        }
+    }
+
+    private static StreamingValidator getValidator(String schema) throws ParseException {
+        return ((JacksonSchema) JsonCodec.getInstance().parseSchema(schema)).getStreamingValidator();
+    }
+
+    private static ByteArrayInputStream toStream(String json) throws Exception {
+        return new ByteArrayInputStream(json.getBytes("UTF-8"));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import org.brutusin.json.impl.JacksonCodec;
+import org.brutusin.json.impl.metrics.CodecMetrics.Operation;
+import org.brutusin.json.spi.JsonNode;
+import org.brutusin.json.spi.JsonSchema;
+import org.brutusin.json.spi.TestClass;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class InMemoryCodecMetricsTest {
+
+    @Test
+    public void testCodecOperations() throws Exception {
+        JacksonCodec codec = new JacksonCodec();
+        InMemoryCodecMetrics metrics = new InMemoryCodecMetrics();
+        codec.setMetrics(metrics);
+
+        TestClass tc = new TestClass();
+        tc.setString("metrics");
+        String json = codec.transform(tc);
+        assertEquals(1, metrics.getCount(Operation.TRANSFORM));
+        assertEquals(json.length(), metrics.getTotalBytes(Operation.TRANSFORM));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        codec.transform(tc, baos);
+        assertEquals(2, metrics.getCount(Operation.TRANSFORM));
+        assertEquals(json.length() + baos.size(), metrics.getTotalBytes(Operation.TRANSFORM));
+
+        codec.transform(tc, new StringWriter());
+        codec.transform(tc, Channels.newChannel(new ByteArrayOutputStream()));
+        assertEquals(4, metrics.getCount(Operation.TRANSFORM));
+        assertEquals(4L * json.length(), metrics.getTotalBytes(Operation.TRANSFORM));
+
+        codec.parse(json, TestClass.class);
+        codec.parse(json.getBytes("UTF-8"), TestClass.class);
+        assertEquals(2, metrics.getCount(Operation.PARSE));
+        assertEquals(2L * json.length(), metrics.getTotalBytes(Operation.PARSE));
+
+        JsonNode node = codec.toJsonNode(tc);
+        assertEquals(1, metrics.getCount(Operation.TO_JSON_NODE));
+        codec.load(node, TestClass.class);
+        assertEquals(1, metrics.getCount(Operation.LOAD));
+        assertEquals(2, metrics.getCount(Operation.PARSE));
+
+        codec.getSchemaString(TestClass.class);
+        codec.getSchemaString(TestClass.class);
+        assertEquals(1, metrics.getCount(Operation.SCHEMA_GENERATION));
+
+        String schemaString = "{\"type\":\"object\",\"description\":\"InMemoryCodecMetricsTest\"}";
+        JsonSchema schema = codec.parseSchema(schemaString);
+        schema.validate(codec.parse("{}"));
+        schema.validate(codec.parse("{}"));
+        codec.parseSchema(schemaString).validate(codec.parse("{}"));
+        assertEquals(3, metrics.getCount(Operation.VALIDATION));
+        assertEquals(1, metrics.getValidatorCacheMisses());
+        assertEquals(1, metrics.getValidatorCacheHits());
+        assertTrue(metrics.getLatencyPercentile(Operation.VALIDATION, 0.5) > 0);
+
+        metrics.reset();
+        assertEquals(0, metrics.getCount(Operation.PARSE));
+        codec.setMetrics(null);
+        codec.parse(json, TestClass.class);
+        assertEquals(0, metrics.getCount(Operation.PARSE));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Ignacio del Valle Alles idelvall@brutusin.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.brutusin.json.impl.pool;
+
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ignacio del Valle Alles idelvall@brutusin.org
+ */
+public class StripedBufferRecyclerPoolTest {
+
+    @Test
+    public void testReuse() {
+        StripedBufferRecyclerPool pool = new StripedBufferRecyclerPool(3);
+        assertEquals(4, pool.capacity());
+        BufferRecycler recycler = pool.acquire();
+        assertNotNull(recycler);
+        assertEquals(0, pool.size());
+        pool.release(recycler);
+        assertEquals(1, pool.size());
+        assertSame(recycler, pool.acquire());
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void testBounded() {
+        StripedBufferRecyclerPool pool = new StripedBufferRecyclerPool(4);
+        for (int i = 0; i < 10; i++) {
+            pool.release(new BufferRecycler());
+        }
+        assertEquals(4, pool.size());
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(pool.acquire());
+        }
+        assertEquals(0, pool.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new StripedBufferRecyclerPool(0);
+    }
+}